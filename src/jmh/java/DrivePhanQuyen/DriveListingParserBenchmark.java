@@ -0,0 +1,216 @@
+package DrivePhanQuyen;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Chi phí parse một page files.list (1000 file, 3 permission mỗi file), cùng dữ liệu đầu vào là byte body:
+ * - streamingParser: DriveListingParser (JsonReader đọc thẳng từ InputStream)
+ * - legacyRegexParser: body -> String rồi substring + regex cho từng field (parser trước DriveListingParser)
+ *
+ * Chạy: mvn -Pjmh compile exec:exec -Djmh.args="DriveListingParserBenchmark -f 1 -prof gc"
+ * (-prof gc: gc.alloc.rate.norm = số byte cấp phát cho mỗi page)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class DriveListingParserBenchmark {
+    private static final int FILES_PER_PAGE = 1000;
+    private static final String[] ROLES = {"writer", "reader", "commenter"};
+
+    private byte[] page;
+
+    @Setup
+    public void setUp() {
+        StringBuilder json = new StringBuilder(FILES_PER_PAGE * 700);
+        json.append("{\"nextPageToken\":\"token-").append(FILES_PER_PAGE).append("\",\"files\":[");
+        for (int i = 0; i < FILES_PER_PAGE; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"id\":\"1AbCdEfGhIjKlMnOpQrStUvWxYz").append(i)
+                    .append("\",\"name\":\"Báo cáo \\\"quý\\\" ").append(i)
+                    .append(".docx\",\"mimeType\":\"application/vnd.openxmlformats-officedocument.wordprocessingml.document\"")
+                    .append(",\"parents\":[\"0BFolder").append(i % 50).append("\"]")
+                    .append(",\"capabilities\":{\"canShare\":true,\"canEdit\":true}")
+                    .append(",\"permissions\":[");
+            json.append("{\"id\":\"0").append(i).append("\",\"type\":\"user\",\"role\":\"owner\",")
+                    .append("\"emailAddress\":\"owner").append(i % 20).append("@old-domain.com\"}");
+            for (int p = 0; p < ROLES.length - 1; p++) {
+                json.append(",{\"id\":\"").append(p + 1).append(i).append("\",\"type\":\"user\",\"role\":\"")
+                        .append(ROLES[(i + p) % ROLES.length]).append("\",\"emailAddress\":\"user")
+                        .append((i * 7 + p) % 300).append("@old-domain.com\"}");
+            }
+            json.append("]}");
+        }
+        json.append("]}");
+        page = json.toString().getBytes(StandardCharsets.UTF_8);
+
+        // Hai parser phải cho cùng kết quả trước khi so chi phí
+        try {
+            FilePage streaming = streamingParser();
+            List<DriveFile> legacy = legacyRegexParser();
+            if (streaming.files.size() != FILES_PER_PAGE || legacy.size() != FILES_PER_PAGE) {
+                throw new IllegalStateException("Expected " + FILES_PER_PAGE + " files, got " +
+                        streaming.files.size() + " / " + legacy.size());
+            }
+            for (int i = 0; i < FILES_PER_PAGE; i++) {
+                DriveFile a = streaming.files.get(i);
+                DriveFile b = legacy.get(i);
+                if (!a.id.equals(b.id) || !a.name.equals(b.name) || a.permissions.size() != b.permissions.size()) {
+                    throw new IllegalStateException("Parsers disagree on file " + i);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Benchmark
+    public FilePage streamingParser() throws IOException {
+        return DriveListingParser.parseFilePage(new ByteArrayInputStream(page));
+    }
+
+    @Benchmark
+    public List<DriveFile> legacyRegexParser() {
+        return LegacyRegexParser.parseFiles(new String(page, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parser cũ của DriveServiceComplete (parseFilesFromResponse, ...), giữ nguyên để so sánh
+     */
+    private static class LegacyRegexParser {
+
+        static List<DriveFile> parseFiles(String jsonResponse) {
+            List<DriveFile> files = new ArrayList<>();
+            int filesIndex = jsonResponse.indexOf("\"files\"");
+            if (filesIndex == -1) return files;
+
+            int arrayStart = jsonResponse.indexOf("[", filesIndex);
+            if (arrayStart == -1) return files;
+
+            int arrayEnd = findMatchingBracket(jsonResponse, arrayStart);
+            if (arrayEnd == -1) return files;
+
+            String filesArrayContent = jsonResponse.substring(arrayStart + 1, arrayEnd);
+            if (filesArrayContent.trim().isEmpty()) return files;
+
+            for (String fileJson : extractJsonObjects(filesArrayContent)) {
+                DriveFile file = parseFile(fileJson);
+                if (file != null) {
+                    files.add(file);
+                }
+            }
+            // nextPageToken cũng được tìm bằng regex trên cả body
+            extractJsonValue(jsonResponse, "nextPageToken");
+            return files;
+        }
+
+        private static int findMatchingBracket(String json, int startIndex) {
+            int count = 0;
+            for (int i = startIndex; i < json.length(); i++) {
+                char c = json.charAt(i);
+                if (c == '[') count++;
+                else if (c == ']') {
+                    count--;
+                    if (count == 0) return i;
+                }
+            }
+            return -1;
+        }
+
+        private static List<String> extractJsonObjects(String arrayContent) {
+            List<String> objects = new ArrayList<>();
+            int start = 0;
+            int braceCount = 0;
+            boolean inString = false;
+            boolean escaped = false;
+
+            for (int i = 0; i < arrayContent.length(); i++) {
+                char c = arrayContent.charAt(i);
+
+                if (escaped) {
+                    escaped = false;
+                    continue;
+                }
+                if (c == '\\') {
+                    escaped = true;
+                    continue;
+                }
+                if (c == '"') {
+                    inString = !inString;
+                    continue;
+                }
+                if (inString) continue;
+
+                if (c == '{') {
+                    if (braceCount == 0) start = i;
+                    braceCount++;
+                } else if (c == '}') {
+                    braceCount--;
+                    if (braceCount == 0) {
+                        objects.add(arrayContent.substring(start, i + 1));
+                    }
+                }
+            }
+            return objects;
+        }
+
+        private static DriveFile parseFile(String fileJson) {
+            DriveFile file = new DriveFile();
+            file.id = extractJsonValue(fileJson, "id");
+            if (file.id == null) return null;
+
+            file.name = extractJsonValue(fileJson, "name");
+            if (file.name == null) file.name = "Unnamed File";
+
+            file.mimeType = extractJsonValue(fileJson, "mimeType");
+            file.permissions = parsePermissions(fileJson);
+            return file;
+        }
+
+        private static String extractJsonValue(String json, String key) {
+            Pattern pattern = Pattern.compile("\"" + key + "\"\\s*:\\s*\"([^\"\\\\]*(\\\\.[^\"\\\\]*)*)\"");
+            Matcher matcher = pattern.matcher(json);
+            if (matcher.find()) {
+                return matcher.group(1).replace("\\\"", "\"").replace("\\\\", "\\");
+            }
+            return null;
+        }
+
+        private static List<DrivePermission> parsePermissions(String fileJson) {
+            List<DrivePermission> permissions = new ArrayList<>();
+            int permissionsIndex = fileJson.indexOf("\"permissions\"");
+            if (permissionsIndex == -1) return permissions;
+
+            int arrayStart = fileJson.indexOf("[", permissionsIndex);
+            if (arrayStart == -1) return permissions;
+
+            int arrayEnd = findMatchingBracket(fileJson, arrayStart);
+            if (arrayEnd == -1) return permissions;
+
+            String permissionsContent = fileJson.substring(arrayStart + 1, arrayEnd);
+            if (permissionsContent.trim().isEmpty()) return permissions;
+
+            for (String permissionJson : extractJsonObjects(permissionsContent)) {
+                DrivePermission permission = new DrivePermission();
+                permission.role = extractJsonValue(permissionJson, "role");
+                permission.emailAddress = extractJsonValue(permissionJson, "emailAddress");
+                permission.type = extractJsonValue(permissionJson, "type");
+
+                if (permission.role != null) {
+                    permissions.add(permission);
+                }
+            }
+            return permissions;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package DrivePhanQuyen;
+
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache access token theo key (email user được impersonate).
+ *
+ * - Không có lock toàn cục: user A lấy token chậm không chặn user B
+ * - Single-flight: mỗi key chỉ có một lần refresh đang chạy,
+ *   các thread khác cùng key chờ chung một future
+ * - Token còn hạn nhưng đã vào vùng margin (5 phút) vẫn được dùng ngay,
+ *   đồng thời refresh chạy nền
+ * - Token của user đang hoạt động được gia hạn nền trước khi vào vùng margin
+ */
+class AccessTokenCache {
+    static final long DEFAULT_REFRESH_MARGIN_MS = 5 * 60 * 1000;
+    private static final long RENEW_AHEAD_MS = 60 * 1000; // Gia hạn trước margin 1 phút
+
+    /**
+     * Lấy token mới từ server (JWT sign + token exchange)
+     */
+    interface TokenFetcher {
+        AccessToken fetch(String key) throws Exception;
+    }
+
+    static class AccessToken {
+        final String value;
+        final long expiresAtMillis;
+
+        AccessToken(String value, long expiresAtMillis) {
+            this.value = value;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    private static class Entry {
+        final AccessToken token;
+        final long fetchedAtMillis;
+        volatile long lastAccessMillis;
+
+        Entry(AccessToken token, long fetchedAtMillis) {
+            this.token = token;
+            this.fetchedAtMillis = fetchedAtMillis;
+            this.lastAccessMillis = fetchedAtMillis;
+        }
+    }
+
+    private final TokenFetcher fetcher;
+    private final long refreshMarginMillis;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<AccessToken>> inFlight = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService renewer;
+
+    // Hit = trả token từ cache ngay, miss = phải chờ lấy token mới
+    private final AtomicLong hitCount = new AtomicLong(0);
+    private final AtomicLong missCount = new AtomicLong(0);
+
+    AccessTokenCache(String name, TokenFetcher fetcher, long refreshMarginMillis) {
+        this.fetcher = fetcher;
+        this.refreshMarginMillis = refreshMarginMillis;
+        this.renewer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "TokenRenewer-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Lấy token hợp lệ cho key. Chỉ chờ khi chưa có token hoặc token đã hết hạn thật sự.
+     */
+    String get(String key) throws Exception {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(key);
+
+        if (entry != null && now < entry.token.expiresAtMillis) {
+            hitCount.incrementAndGet();
+            entry.lastAccessMillis = now;
+            if (now >= entry.token.expiresAtMillis - refreshMarginMillis && !inFlight.containsKey(key)) {
+                // Sắp hết hạn - refresh nền, vẫn trả token hiện tại
+                renewer.execute(() -> {
+                    Entry current = entries.get(key);
+                    if (current == null || System.currentTimeMillis() >= current.token.expiresAtMillis - refreshMarginMillis) {
+                        refreshQuietly(key);
+                    }
+                });
+            }
+            return entry.token.value;
+        }
+
+        missCount.incrementAndGet();
+        try {
+            return refresh(key).get().value;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw e;
+        }
+    }
+
+    /**
+     * Single-flight refresh: thread đầu tiên gọi fetcher, các thread sau nhận cùng future
+     */
+    private CompletableFuture<AccessToken> refresh(String key) {
+        CompletableFuture<AccessToken> created = new CompletableFuture<>();
+        CompletableFuture<AccessToken> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing;
+        }
+
+        try {
+            AccessToken token = fetcher.fetch(key);
+            entries.put(key, new Entry(token, System.currentTimeMillis()));
+            scheduleRenewal(key, token);
+            created.complete(token);
+        } catch (Exception e) {
+            created.completeExceptionally(e);
+        } finally {
+            inFlight.remove(key, created);
+        }
+        return created;
+    }
+
+    long getHitCount() {
+        return hitCount.get();
+    }
+
+    long getMissCount() {
+        return missCount.get();
+    }
+
+    String describe() {
+        return "token cache hits: " + hitCount.get() + ", misses: " + missCount.get();
+    }
+
+    private void refreshQuietly(String key) {
+        try {
+            refresh(key).get();
+        } catch (Exception e) {
+            System.err.println("⚠️ Background token refresh failed for " + key + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Hẹn gia hạn trước khi token vào vùng margin. Token không được dùng
+     * kể từ lần lấy trước (user đã xong) thì không gia hạn nữa.
+     */
+    private void scheduleRenewal(String key, AccessToken token) {
+        long delay = token.expiresAtMillis - refreshMarginMillis - RENEW_AHEAD_MS - System.currentTimeMillis();
+        if (delay <= 0) return;
+
+        renewer.schedule(() -> {
+            Entry entry = entries.get(key);
+            if (entry == null || entry.token != token) return; // Đã được refresh bởi đường khác
+            if (entry.lastAccessMillis <= entry.fetchedAtMillis) return; // Không còn ai dùng
+            refreshQuietly(key);
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,191 @@
+package DrivePhanQuyen;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cửa sổ concurrency tự điều chỉnh cho Drive API calls (thay Semaphore cố định).
+ *
+ * - Additive increase: mỗi request thành công +1/limit (~ +1 mỗi cửa sổ)
+ *   khi latency chưa tăng
+ * - Multiplicative decrease: gặp 429 / userRateLimitExceeded thì limit * 0.5
+ *   (tối đa một lần mỗi RTT để một loạt lỗi cùng lúc không đánh sập limit)
+ * - Latency gradient (kiểu Gradient2/Vegas): so RTT dài hạn với RTT ngắn hạn;
+ *   RTT ngắn hạn tăng nghĩa là request bắt đầu xếp hàng phía server ->
+ *   co limit theo gradient để dừng ở "knee" của throughput
+ *
+ * Dùng ReentrantLock thay cho synchronized/wait: virtual thread chờ slot không giữ chặt carrier thread.
+ */
+class AdaptiveConcurrencyLimiter {
+    private static final double BACKOFF_RATIO = 0.5;
+    private static final double SHORT_RTT_ALPHA = 0.2;   // EWMA ~5 samples
+    private static final double LONG_RTT_ALPHA = 0.01;   // EWMA ~100 samples
+    private static final double GRADIENT_TOLERANCE = 0.9; // gradient >= 0.9 coi như chưa xếp hàng
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    private double limit;
+    private int inFlight = 0;
+    private double shortRttNanos = 0;
+    private double longRttNanos = 0;
+    private long lastDecreaseNanos = 0;
+
+    private final AtomicLong shedCount = new AtomicLong(0);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+
+    AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Chờ tới khi còn chỗ trong cửa sổ. Trả về thời điểm bắt đầu (nanoTime) để đo RTT.
+     */
+    long acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= (int) limit) {
+                slotFreed.await();
+            }
+            inFlight++;
+            return System.nanoTime();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Request thành công - cập nhật RTT và nới/co cửa sổ
+     */
+    void onSuccess(long startNanos) {
+        lock.lock();
+        try {
+            release();
+
+            long rtt = System.nanoTime() - startNanos;
+            if (shortRttNanos == 0) {
+                shortRttNanos = rtt;
+                longRttNanos = rtt;
+                return;
+            }
+            shortRttNanos = shortRttNanos * (1 - SHORT_RTT_ALPHA) + rtt * SHORT_RTT_ALPHA;
+            longRttNanos = longRttNanos * (1 - LONG_RTT_ALPHA) + rtt * LONG_RTT_ALPHA;
+
+            // RTT ngắn hạn giảm xuống dưới baseline: kéo baseline theo để không kẹt ở mức cũ
+            if (shortRttNanos < longRttNanos) {
+                longRttNanos = shortRttNanos;
+            }
+
+            // Chỉ nới cửa sổ khi thực sự dùng gần hết (tránh limit phình khi app ít tải)
+            boolean appLimited = inFlight + 1 < limit / 2;
+            double gradient = Math.max(0.5, Math.min(1.0, longRttNanos / shortRttNanos));
+
+            double newLimit;
+            if (gradient >= GRADIENT_TOLERANCE) {
+                newLimit = appLimited ? limit : limit + 1.0 / limit;
+            } else {
+                // Đã qua knee: co theo gradient, giữ lại một hàng đợi nhỏ sqrt(limit)
+                double target = limit * gradient + Math.sqrt(limit);
+                newLimit = limit * (1 - SMOOTHING) + Math.min(limit, target) * SMOOTHING;
+            }
+            limit = clamp(newLimit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Bị rate limit (429 / userRateLimitExceeded) - giải phóng slot và co cửa sổ
+     */
+    void onDropped() {
+        lock.lock();
+        try {
+            release();
+            recordDrop();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lỗi khác (network, 4xx không phải quota) - chỉ giải phóng slot
+     */
+    void onIgnored() {
+        lock.lock();
+        try {
+            release();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ghi nhận rate limit không gắn với slot nào (ví dụ part trong batch bị 429)
+     */
+    void recordDrop() {
+        lock.lock();
+        try {
+            shedCount.incrementAndGet();
+
+            long now = System.nanoTime();
+            long window = (long) Math.max(shortRttNanos, TimeUnit.MILLISECONDS.toNanos(100));
+            if (now - lastDecreaseNanos < window) return;
+
+            lastDecreaseNanos = now;
+            double previous = limit;
+            limit = clamp(limit * BACKOFF_RATIO);
+            System.out.println(String.format("⚠️ Rate limited - concurrency limit %.1f -> %.1f", previous, limit));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release() {
+        inFlight--;
+        slotFreed.signalAll();
+    }
+
+    private double clamp(double value) {
+        return Math.max(minLimit, Math.min(maxLimit, value));
+    }
+
+    int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getShedCount() {
+        return shedCount.get();
+    }
+
+    String describe() {
+        lock.lock();
+        try {
+            return String.format("limit %d, in-flight %d, shed %d, rtt %dms (baseline %dms)",
+                    (int) limit, inFlight, shedCount.get(),
+                    TimeUnit.NANOSECONDS.toMillis((long) shortRttNanos),
+                    TimeUnit.NANOSECONDS.toMillis((long) longRttNanos));
+        } finally {
+            lock.unlock();
+        }
+    }
+}
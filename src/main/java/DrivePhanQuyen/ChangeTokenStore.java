@@ -0,0 +1,82 @@
+package DrivePhanQuyen;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Lưu startPageToken của Changes API theo từng user (trong migration-state/).
+ *
+ * - pendingStartPageToken: lấy lúc bắt đầu lần chạy (trước khi list), giữ nguyên
+ *   khi resume để không bỏ sót thay đổi xảy ra giữa lần crash và lần chạy lại
+ * - startPageToken: chỉ được cập nhật khi user xử lý xong - lần chạy incremental
+ *   sau đọc changes.list từ token này
+ */
+class ChangeTokenStore {
+    private static final String START_TOKEN = "startPageToken";
+    private static final String PENDING_TOKEN = "pendingStartPageToken";
+
+    private ChangeTokenStore() {
+    }
+
+    private static File fileFor(String userEmail) {
+        return new File(DriveEnumerator.STATE_DIR, "changes_" + DriveEnumerator.fileSafe(userEmail) + ".properties");
+    }
+
+    /**
+     * Token của lần migration hoàn tất gần nhất, null nếu chưa có
+     */
+    static synchronized String loadStartToken(String userEmail) throws IOException {
+        return load(userEmail).getProperty(START_TOKEN);
+    }
+
+    static synchronized String loadPendingToken(String userEmail) throws IOException {
+        return load(userEmail).getProperty(PENDING_TOKEN);
+    }
+
+    static synchronized void savePendingToken(String userEmail, String token) throws IOException {
+        Properties props = load(userEmail);
+        props.setProperty(PENDING_TOKEN, token);
+        store(userEmail, props);
+    }
+
+    /**
+     * User xử lý xong: token lấy lúc bắt đầu trở thành điểm bắt đầu cho lần incremental sau
+     */
+    static synchronized void commitPendingToken(String userEmail) throws IOException {
+        Properties props = load(userEmail);
+        String pending = props.getProperty(PENDING_TOKEN);
+        if (pending == null) return;
+
+        props.setProperty(START_TOKEN, pending);
+        props.remove(PENDING_TOKEN);
+        props.setProperty("committedAt", String.valueOf(System.currentTimeMillis()));
+        store(userEmail, props);
+    }
+
+    private static Properties load(String userEmail) throws IOException {
+        Properties props = new Properties();
+        File file = fileFor(userEmail);
+        if (file.exists()) {
+            try (InputStream in = new FileInputStream(file)) {
+                props.load(in);
+            }
+        }
+        return props;
+    }
+
+    private static void store(String userEmail, Properties props) throws IOException {
+        if (!DriveEnumerator.STATE_DIR.exists() && !DriveEnumerator.STATE_DIR.mkdirs()) {
+            throw new IOException("Could not create state directory: " + DriveEnumerator.STATE_DIR.getAbsolutePath());
+        }
+
+        File file = fileFor(userEmail);
+        File tmp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            props.store(out, "Changes API tokens for " + userEmail);
+        }
+        Files.move(tmp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
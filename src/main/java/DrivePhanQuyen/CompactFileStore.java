@@ -0,0 +1,232 @@
+package DrivePhanQuyen;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lưu DriveFile dạng nén trong heap - chỉ dùng cho folder mà FolderTree giữ lại (folder tree mode).
+ * Listing file đầy đủ không đi qua đây: nó nằm trên đĩa trong DriveFileSpillQueue (JSON mỗi record),
+ * heap chỉ giữ buffer đọc/ghi.
+ *
+ * - role / type: mã byte (vài giá trị lặp lại hàng triệu lần)
+ * - email, mimeType, inheritedFrom, parents: id int trong StringDictionary của store
+ * - dictionary thuộc về từng store -> được giải phóng cùng store khi user xử lý xong
+ * - permission của cả chunk (1024 file) nằm trong các mảng primitive liền nhau,
+ *   file chỉ giữ offset -> không còn object DrivePermission / ArrayList cho mỗi file
+ *
+ * get(i) trả về DriveFile dựng lại từ store (bản sao, sửa không ảnh hưởng store).
+ * Append-only, thread-safe.
+ */
+class CompactFileStore {
+    private static final int CHUNK_SIZE = 1024;
+    private static final int NONE = -1;
+    private static final int INHERITED_FROM_UNKNOWN = -2;
+
+    // Drive chỉ có vài role / type - mã byte theo thứ tự xuất hiện
+    private final StringDictionary roleCodes = new StringDictionary();
+    private final StringDictionary typeCodes = new StringDictionary();
+    // Email, mimeType, id folder cha lặp lại giữa các file
+    private final StringDictionary strings = new StringDictionary();
+
+    // Flags của file
+    private static final byte TRASHED = 1;
+    private static final byte CAN_SHARE_KNOWN = 1 << 1;
+    private static final byte CAN_SHARE = 1 << 2;
+    private static final byte CAN_EDIT_KNOWN = 1 << 3;
+    private static final byte CAN_EDIT = 1 << 4;
+    private static final byte HAS_PARENTS = 1 << 5;
+
+    /**
+     * Một nhóm tối đa CHUNK_SIZE file, mảng permission / parents dùng chung cho cả nhóm
+     */
+    private class Chunk {
+        final String[] ids = new String[CHUNK_SIZE];
+        final String[] names = new String[CHUNK_SIZE];
+        final int[] mimeTypes = new int[CHUNK_SIZE];
+        final byte[] flags = new byte[CHUNK_SIZE];
+        final int[] permissionStart = new int[CHUNK_SIZE + 1];
+        final int[] parentStart = new int[CHUNK_SIZE + 1];
+        int size;
+
+        byte[] roles = new byte[CHUNK_SIZE];
+        byte[] types = new byte[CHUNK_SIZE];
+        int[] emails = new int[CHUNK_SIZE];
+        int[] inheritedFrom = new int[CHUNK_SIZE]; // NONE = permission trực tiếp
+        int permissionCount;
+
+        int[] parents = new int[CHUNK_SIZE];
+        int parentCount;
+
+        void add(DriveFile file) {
+            int index = size;
+            ids[index] = file.id;
+            names[index] = file.name;
+            mimeTypes[index] = strings.intern(file.mimeType);
+
+            byte flag = 0;
+            if (file.trashed) flag |= TRASHED;
+            if (file.canShare != null) flag |= file.canShare ? CAN_SHARE_KNOWN | CAN_SHARE : CAN_SHARE_KNOWN;
+            if (file.canEdit != null) flag |= file.canEdit ? CAN_EDIT_KNOWN | CAN_EDIT : CAN_EDIT_KNOWN;
+            if (file.parents != null) flag |= HAS_PARENTS;
+            flags[index] = flag;
+
+            if (file.permissions != null) {
+                for (DrivePermission permission : file.permissions) {
+                    ensurePermissionCapacity(permissionCount + 1);
+                    roles[permissionCount] = byteCode(roleCodes, permission.role);
+                    types[permissionCount] = byteCode(typeCodes, permission.type);
+                    emails[permissionCount] = strings.intern(permission.emailAddress);
+                    if (!permission.inherited) {
+                        inheritedFrom[permissionCount] = NONE;
+                    } else {
+                        inheritedFrom[permissionCount] = permission.inheritedFrom != null
+                                ? strings.intern(permission.inheritedFrom) : INHERITED_FROM_UNKNOWN;
+                    }
+                    permissionCount++;
+                }
+            }
+            permissionStart[index + 1] = permissionCount;
+
+            if (file.parents != null) {
+                for (String parent : file.parents) {
+                    if (parentCount == parents.length) {
+                        parents = Arrays.copyOf(parents, parents.length * 2);
+                    }
+                    parents[parentCount++] = strings.intern(parent);
+                }
+            }
+            parentStart[index + 1] = parentCount;
+            size++;
+        }
+
+        private void ensurePermissionCapacity(int required) {
+            if (required <= roles.length) return;
+            int capacity = Math.max(required, roles.length * 2);
+            roles = Arrays.copyOf(roles, capacity);
+            types = Arrays.copyOf(types, capacity);
+            emails = Arrays.copyOf(emails, capacity);
+            inheritedFrom = Arrays.copyOf(inheritedFrom, capacity);
+        }
+
+        /**
+         * Chunk đầy: cắt mảng permission / parents về đúng kích thước
+         */
+        void trim() {
+            roles = Arrays.copyOf(roles, permissionCount);
+            types = Arrays.copyOf(types, permissionCount);
+            emails = Arrays.copyOf(emails, permissionCount);
+            inheritedFrom = Arrays.copyOf(inheritedFrom, permissionCount);
+            parents = Arrays.copyOf(parents, parentCount);
+        }
+
+        DriveFile get(int index) {
+            DriveFile file = new DriveFile();
+            file.id = ids[index];
+            file.name = names[index];
+            file.mimeType = strings.get(mimeTypes[index]);
+
+            byte flag = flags[index];
+            file.trashed = (flag & TRASHED) != 0;
+            file.canShare = (flag & CAN_SHARE_KNOWN) != 0 ? (flag & CAN_SHARE) != 0 : null;
+            file.canEdit = (flag & CAN_EDIT_KNOWN) != 0 ? (flag & CAN_EDIT) != 0 : null;
+
+            int end = permissionStart[index + 1];
+            file.permissions = new ArrayList<>(end - permissionStart[index]);
+            for (int p = permissionStart[index]; p < end; p++) {
+                DrivePermission permission = new DrivePermission();
+                permission.role = roleCodes.get(roles[p]);
+                permission.type = typeCodes.get(types[p]);
+                permission.emailAddress = strings.get(emails[p]);
+                permission.inherited = inheritedFrom[p] != NONE;
+                permission.inheritedFrom = inheritedFrom[p] >= 0 ? strings.get(inheritedFrom[p]) : null;
+                file.permissions.add(permission);
+            }
+
+            if ((flag & HAS_PARENTS) != 0) {
+                int parentEnd = parentStart[index + 1];
+                file.parents = new ArrayList<>(parentEnd - parentStart[index]);
+                for (int p = parentStart[index]; p < parentEnd; p++) {
+                    file.parents.add(strings.get(parents[p]));
+                }
+            }
+            return file;
+        }
+    }
+
+    private static byte byteCode(StringDictionary codes, String value) {
+        int code = codes.intern(value);
+        if (code > Byte.MAX_VALUE) {
+            throw new IllegalStateException("Too many distinct permission values for byte codes: " + value);
+        }
+        return (byte) code;
+    }
+
+    private final List<Chunk> chunks = new ArrayList<>();
+    private int size;
+
+    synchronized void add(DriveFile file) {
+        Chunk current = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        if (current == null || current.size == CHUNK_SIZE) {
+            if (current != null) current.trim();
+            current = new Chunk();
+            chunks.add(current);
+        }
+        current.add(file);
+        size++;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Dựng lại file thứ index (thứ tự thêm vào)
+     */
+    synchronized DriveFile get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        return chunks.get(index / CHUNK_SIZE).get(index % CHUNK_SIZE);
+    }
+
+    /**
+     * Chỉ id của file thứ index, không dựng DriveFile
+     */
+    synchronized String getId(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        return chunks.get(index / CHUNK_SIZE).ids[index % CHUNK_SIZE];
+    }
+
+    /**
+     * Chuỗi -> id int. Id không bao giờ đổi, chuỗi sống cùng store sở hữu dictionary.
+     */
+    static class StringDictionary {
+        private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+        private volatile String[] values = new String[256];
+        private int count;
+
+        int intern(String value) {
+            if (value == null) return NONE;
+            Integer id = ids.get(value);
+            if (id != null) return id;
+
+            synchronized (this) {
+                id = ids.get(value);
+                if (id != null) return id;
+
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, values.length * 2);
+                }
+                values[count] = value;
+                ids.put(value, count);
+                return count++;
+            }
+        }
+
+        String get(int id) {
+            return id == NONE ? null : values[id];
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package DrivePhanQuyen;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Đóng gói / tách multipart/mixed cho Drive batch endpoint
+ * (https://www.googleapis.com/batch/drive/v3).
+ *
+ * Mỗi part là một HTTP request con, được đánh dấu bằng Content-ID để ghép
+ * response con về đúng request gốc.
+ */
+class DriveBatchRequest {
+    static final String BATCH_ENDPOINT = "https://www.googleapis.com/batch/drive/v3";
+    static final int MAX_PARTS = 100; // Giới hạn của Drive cho một batch
+
+    private static final Pattern BOUNDARY_PATTERN = Pattern.compile("boundary=\"?([^\";]+)\"?");
+    private static final Pattern CONTENT_ID_PATTERN = Pattern.compile("(?im)^Content-ID:\\s*<?(?:response-)?([^>\\r\\n]+)>?");
+    private static final Pattern STATUS_LINE_PATTERN = Pattern.compile("(?m)^HTTP/\\d(?:\\.\\d)?\\s+(\\d{3})");
+
+    private final String boundary = "batch_" + UUID.randomUUID().toString().replace("-", "");
+    private final List<Part> parts = new ArrayList<>();
+
+    /**
+     * Một request con trong batch
+     */
+    static class Part {
+        final String contentId;
+        final String method;
+        final String path;
+        final String payload;
+
+        Part(String contentId, String method, String path, String payload) {
+            this.contentId = contentId;
+            this.method = method;
+            this.path = path;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * Response của một request con
+     */
+    static class PartResponse {
+        final int statusCode;
+        final String body;
+
+        PartResponse(int statusCode, String body) {
+            this.statusCode = statusCode;
+            this.body = body;
+        }
+
+        boolean isSuccess() {
+            return statusCode >= 200 && statusCode < 300;
+        }
+
+        /**
+         * 429, 5xx và 403 do quota là lỗi tạm thời - có thể retry riêng part này
+         */
+        boolean isRetryable() {
+            if (statusCode == 429 || statusCode >= 500) return true;
+            return statusCode == 403 && body != null &&
+                    (body.contains("rateLimitExceeded") || body.contains("userRateLimitExceeded"));
+        }
+    }
+
+    void add(Part part) {
+        if (parts.size() >= MAX_PARTS) {
+            throw new IllegalStateException("Batch already contains " + MAX_PARTS + " parts");
+        }
+        parts.add(part);
+    }
+
+    int size() {
+        return parts.size();
+    }
+
+    String getContentType() {
+        return "multipart/mixed; boundary=" + boundary;
+    }
+
+    /**
+     * Build body multipart/mixed
+     */
+    String encode() {
+        StringBuilder body = new StringBuilder();
+        for (Part part : parts) {
+            body.append("--").append(boundary).append("\r\n");
+            body.append("Content-Type: application/http\r\n");
+            body.append("Content-ID: <").append(part.contentId).append(">\r\n");
+            body.append("\r\n");
+            body.append(part.method).append(" ").append(part.path).append("\r\n");
+            if (part.payload != null && !part.payload.isEmpty()) {
+                body.append("Content-Type: application/json; charset=UTF-8\r\n");
+                body.append("\r\n");
+                body.append(part.payload).append("\r\n");
+            } else {
+                body.append("\r\n");
+            }
+        }
+        body.append("--").append(boundary).append("--\r\n");
+        return body.toString();
+    }
+
+    /**
+     * Tách response multipart/mixed thành map contentId -> response con.
+     * Part nào không có trong map coi như không nhận được response.
+     */
+    static Map<String, PartResponse> decode(String contentType, String responseBody) {
+        Map<String, PartResponse> responses = new HashMap<>();
+        if (contentType == null || responseBody == null) return responses;
+
+        Matcher boundaryMatcher = BOUNDARY_PATTERN.matcher(contentType);
+        if (!boundaryMatcher.find()) return responses;
+
+        String delimiter = "--" + boundaryMatcher.group(1);
+        for (String rawPart : responseBody.split(Pattern.quote(delimiter))) {
+            String part = rawPart.trim();
+            if (part.isEmpty() || part.equals("--")) continue;
+
+            Matcher idMatcher = CONTENT_ID_PATTERN.matcher(part);
+            Matcher statusMatcher = STATUS_LINE_PATTERN.matcher(part);
+            if (!idMatcher.find() || !statusMatcher.find()) continue;
+
+            int statusCode = Integer.parseInt(statusMatcher.group(1));
+
+            // Body con nằm sau dòng trống đầu tiên kể từ status line
+            String afterStatus = part.substring(statusMatcher.end());
+            int bodyStart = afterStatus.indexOf("\r\n\r\n");
+            int separatorLength = 4;
+            if (bodyStart == -1) {
+                bodyStart = afterStatus.indexOf("\n\n");
+                separatorLength = 2;
+            }
+            String body = bodyStart == -1 ? "" : afterStatus.substring(bodyStart + separatorLength).trim();
+
+            responses.put(idMatcher.group(1).trim(), new PartResponse(statusCode, body));
+        }
+        return responses;
+    }
+}
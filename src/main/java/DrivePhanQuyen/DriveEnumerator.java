@@ -0,0 +1,446 @@
+package DrivePhanQuyen;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Engine duyệt toàn bộ drive của một user với bộ nhớ giới hạn.
+ *
+ * - Mỗi page được ghi xuống DriveFileSpillQueue (đĩa), không giữ trong heap
+ * - Listing có thể gồm nhiều partition (mỗi partition một query files.list,
+ *   ví dụ query planning theo email cũ); các partition được duyệt song song
+ *   và file trùng giữa các partition bị loại theo fileId
+ * - Có PartitionSplitter: partition có nhiều hơn một page được chia đôi ngay sau page đầu
+ *   (ví dụ theo modifiedTime) cho tới khi đủ partitionTarget partition chạy song song
+ * - Sau mỗi page lưu nextPageToken của partition vào file state -> chạy lại
+ *   sẽ resume từ page kế tiếp của từng partition thay vì list lại từ đầu
+ * - Đếm số page và số item đã duyệt
+ *
+ * State nằm trong thư mục migration-state/, bị xóa khi user xử lý xong.
+ */
+class DriveEnumerator implements Closeable {
+    static final File STATE_DIR = new File("migration-state");
+    static final int LISTING_THREADS = 4;
+    // Trần số thread list của một user - partition vượt quá chờ trong queue của pool
+    static final int MAX_LISTING_THREADS = LISTING_THREADS * 4;
+
+    /**
+     * Lấy một page listing của query bắt đầu từ pageToken (null = page đầu)
+     */
+    interface PageSource {
+        FilePage fetchPage(String query, String pageToken) throws Exception;
+    }
+
+    /**
+     * Chia query thành các query con rời nhau phủ đúng tập file của nó, null nếu không chia được
+     */
+    interface PartitionSplitter {
+        List<String> split(String query);
+    }
+
+    /**
+     * Một query độc lập trong listing, có page token riêng
+     */
+    private static class Partition {
+        final String query;
+        String nextPageToken;
+        boolean complete;
+
+        Partition(String query) {
+            this.query = query;
+        }
+    }
+
+    private final String userEmail;
+    private final File stateFile;
+    private final DriveFileSpillQueue queue;
+    private final List<Partition> partitions = new ArrayList<>();
+
+    private final int initialPartitionCount;
+    private final PartitionSplitter splitter;
+    private final int partitionTarget;
+
+    // Chỉ cần dedupe khi có nhiều partition (cùng một file có thể khớp nhiều query).
+    // Hash 64-bit của fileId thay cho String - 8 byte/file. Guarded by this.
+    private final LongHashSet seenFileIds;
+
+    private long pagesWalked;
+    private long itemsWalked;
+    private long duplicatesSkipped;
+    private long splits;
+    private final boolean resumed;
+
+    DriveEnumerator(String userEmail, List<String> queries) throws IOException {
+        this(userEmail, queries, null, 0);
+    }
+
+    /**
+     * @param splitter        null = giữ nguyên các partition ban đầu
+     * @param partitionTarget số partition chạy song song tối đa mà việc chia hướng tới
+     */
+    DriveEnumerator(String userEmail, List<String> queries, PartitionSplitter splitter,
+                    int partitionTarget) throws IOException {
+        this.userEmail = userEmail;
+        this.splitter = partitionTarget > 0 ? splitter : null;
+        this.partitionTarget = partitionTarget;
+
+        if (!STATE_DIR.exists() && !STATE_DIR.mkdirs()) {
+            throw new IOException("Could not create state directory: " + STATE_DIR.getAbsolutePath());
+        }
+
+        String baseName = "enum_" + fileSafe(userEmail);
+        this.stateFile = new File(STATE_DIR, baseName + ".properties");
+        File queueFile = new File(STATE_DIR, baseName + ".queue");
+
+        for (String query : queries) {
+            partitions.add(new Partition(query));
+        }
+        this.initialPartitionCount = partitions.size();
+
+        this.resumed = loadState();
+        if (!resumed && queueFile.exists() && !queueFile.delete()) {
+            throw new IOException("Could not reset stale spill file: " + queueFile.getAbsolutePath());
+        }
+        this.queue = new DriveFileSpillQueue(queueFile);
+
+        this.seenFileIds = partitions.size() > 1 || this.splitter != null
+                ? new LongHashSet((int) Math.min(queue.getAppendedCount() + 1024, Integer.MAX_VALUE / 2)) : null;
+        if (seenFileIds != null && queue.getAppendedCount() > 0) {
+            // Resume: dựng lại tập fileId đã ghi để partition còn dở không ghi trùng
+            queue.scan(file -> seenFileIds.add(LongHashSet.hash64(file.id)));
+        }
+    }
+
+    /**
+     * Email -> phần tên file an toàn cho state: tiền tố dễ đọc + SHA-256 của email lowercase
+     * (tiền tố một mình không đủ: john.doe@x.com và john_doe@x.com cho cùng một tên)
+     */
+    static String fileSafe(String userEmail) {
+        String email = userEmail.toLowerCase(Locale.ROOT);
+        String readable = email.replace("@", "_at_").replaceAll("[^a-z0-9_-]", "_");
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(email.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder(readable).append('_');
+            for (int i = 0; i < 8; i++) {
+                name.append(String.format("%02x", digest[i]));
+            }
+            return name.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Đọc state cũ. State chỉ dùng được nếu cùng tập query ban đầu (mapping đổi -> list lại từ đầu).
+     * Partition sinh ra do chia ở lần trước nằm sau các partition ban đầu và được nạp thêm.
+     */
+    private boolean loadState() throws IOException {
+        if (!stateFile.exists()) return false;
+
+        Properties props = new Properties();
+        try (InputStream in = new FileInputStream(stateFile)) {
+            props.load(in);
+        }
+
+        int storedCount = Integer.parseInt(props.getProperty("partitions", "0"));
+        int initialCount = Integer.parseInt(props.getProperty("initialPartitions", String.valueOf(storedCount)));
+        boolean samePlan = initialCount == partitions.size() && storedCount >= initialCount;
+        for (int i = 0; samePlan && i < initialCount; i++) {
+            samePlan = partitions.get(i).query.equals(props.getProperty("partition." + i + ".query"));
+        }
+        if (!samePlan) {
+            System.out.println("📚 Query plan for " + userEmail + " changed since last run - listing from scratch");
+            return false;
+        }
+
+        for (int i = partitions.size(); i < storedCount; i++) {
+            partitions.add(new Partition(props.getProperty("partition." + i + ".query")));
+        }
+        for (int i = 0; i < storedCount; i++) {
+            Partition partition = partitions.get(i);
+            partition.nextPageToken = props.getProperty("partition." + i + ".nextPageToken");
+            partition.complete = Boolean.parseBoolean(props.getProperty("partition." + i + ".complete", "false"));
+        }
+        pagesWalked = Long.parseLong(props.getProperty("pagesWalked", "0"));
+        itemsWalked = Long.parseLong(props.getProperty("itemsWalked", "0"));
+        duplicatesSkipped = Long.parseLong(props.getProperty("duplicatesSkipped", "0"));
+        splits = Long.parseLong(props.getProperty("splits", "0"));
+        return true;
+    }
+
+    private synchronized void saveState() throws IOException {
+        Properties props = new Properties();
+        props.setProperty("partitions", String.valueOf(partitions.size()));
+        props.setProperty("initialPartitions", String.valueOf(initialPartitionCount));
+        for (int i = 0; i < partitions.size(); i++) {
+            Partition partition = partitions.get(i);
+            props.setProperty("partition." + i + ".query", partition.query);
+            if (partition.nextPageToken != null) {
+                props.setProperty("partition." + i + ".nextPageToken", partition.nextPageToken);
+            }
+            props.setProperty("partition." + i + ".complete", String.valueOf(partition.complete));
+        }
+        props.setProperty("pagesWalked", String.valueOf(pagesWalked));
+        props.setProperty("itemsWalked", String.valueOf(itemsWalked));
+        props.setProperty("duplicatesSkipped", String.valueOf(duplicatesSkipped));
+        props.setProperty("splits", String.valueOf(splits));
+        props.setProperty("complete", String.valueOf(isComplete()));
+
+        // Ghi file tạm rồi rename để state không bao giờ bị ghi dở
+        File tmp = new File(stateFile.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            props.store(out, "Enumeration state for " + userEmail);
+        }
+        Files.move(tmp.toPath(), stateFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private synchronized boolean isComplete() {
+        for (Partition partition : partitions) {
+            if (!partition.complete) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Duyệt tới hết listing. onPage nhận số item mới (sau dedupe) của mỗi page ghi vào queue.
+     * Luôn đóng đầu ghi của queue khi kết thúc để worker biết điểm dừng.
+     */
+    void run(PageSource source, IntConsumer onPage) throws Exception {
+        try {
+            if (partitions.isEmpty()) {
+                System.out.println("📚 Nothing to list for " + userEmail + " (empty query plan)");
+                return;
+            }
+            if (isComplete()) {
+                System.out.println("📚 Listing for " + userEmail + " already complete (" +
+                        pagesWalked + " pages, " + itemsWalked + " items) - reusing spill queue");
+                return;
+            }
+            if (resumed) {
+                System.out.println("📚 Resuming listing for " + userEmail + " after " +
+                        pagesWalked + " pages, " + itemsWalked + " items");
+            }
+
+            List<Partition> pending = new ArrayList<>();
+            for (Partition partition : partitions) {
+                if (!partition.complete) pending.add(partition);
+            }
+
+            if (pending.size() == 1 && splitter == null) {
+                walk(pending.get(0), source, onPage, null);
+            } else {
+                walkInParallel(pending, source, onPage);
+            }
+
+            System.out.println("📚 Listing complete for " + userEmail + ": " +
+                    pagesWalked + " pages, " + itemsWalked + " items" +
+                    (partitions.size() > 1 ? " (" + partitions.size() + " queries" +
+                            (splits > 0 ? " after " + splits + " splits" : "") + ", " +
+                            duplicatesSkipped + " duplicates skipped)" : ""));
+        } finally {
+            queue.closeWriter();
+        }
+    }
+
+    /**
+     * Duyệt song song. Partition mới sinh ra do chia được submit vào cùng pool;
+     * listing xong khi không còn partition nào đang chạy hoặc chờ.
+     */
+    private void walkInParallel(List<Partition> pending, PageSource source, IntConsumer onPage) throws Exception {
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        int threads = Math.min(Math.max(LISTING_THREADS, partitionTarget), MAX_LISTING_THREADS);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "FileLister-" + userEmail + "-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(0);
+        try {
+            outstanding.incrementAndGet(); // Giữ done mở cho tới khi submit xong các partition ban đầu
+            for (Partition partition : pending) {
+                submitWalk(executor, partition, source, onPage, outstanding, done);
+            }
+            if (outstanding.decrementAndGet() == 0) {
+                done.complete(null);
+            }
+
+            // Partition lỗi: huỷ các partition còn lại, state đã lưu cho lần resume sau
+            try {
+                done.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) throw (Exception) cause;
+                throw e;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void submitWalk(ExecutorService executor, Partition partition, PageSource source, IntConsumer onPage,
+                            AtomicInteger outstanding, CompletableFuture<Void> done) {
+        outstanding.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    walk(partition, source, onPage,
+                            child -> submitWalk(executor, child, source, onPage, outstanding, done));
+                } catch (Throwable e) {
+                    done.completeExceptionally(e);
+                } finally {
+                    if (outstanding.decrementAndGet() == 0) {
+                        done.complete(null);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            outstanding.decrementAndGet();
+            done.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * @param onSplit nhận các partition con khi partition này được chia (null = không chia)
+     */
+    private void walk(Partition partition, PageSource source, IntConsumer onPage,
+                      Consumer<Partition> onSplit) throws Exception {
+        while (!partition.complete) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException("Listing interrupted for " + userEmail);
+            }
+
+            boolean firstPage = partition.nextPageToken == null;
+            FilePage page = source.fetchPage(partition.query, partition.nextPageToken);
+
+            List<Partition> children = null;
+            int freshCount;
+            long pages;
+            long items;
+            synchronized (this) {
+                // Còn page sau ngay từ page đầu -> partition lớn, chia đôi nếu chưa đủ song song
+                if (onSplit != null && firstPage && page.nextPageToken != null && activePartitions() < partitionTarget) {
+                    children = split(partition);
+                }
+
+                List<DriveFile> fresh = dedupe(page.files);
+                queue.appendAll(fresh);
+                freshCount = fresh.size();
+                pagesWalked++;
+                itemsWalked += fresh.size();
+                duplicatesSkipped += page.files.size() - fresh.size();
+                if (children != null) {
+                    // Các partition con list lại từ đầu, item của page này bị dedupe
+                    partition.complete = true;
+                    partitions.addAll(children);
+                    splits++;
+                } else {
+                    partition.nextPageToken = page.nextPageToken;
+                    partition.complete = page.nextPageToken == null;
+                }
+                saveState();
+                pages = pagesWalked;
+                items = itemsWalked;
+            }
+
+            if (onPage != null) {
+                onPage.accept(freshCount);
+            }
+
+            if (pages % 10 == 0) {
+                System.out.println("📚 " + userEmail + ": walked " + pages + " pages, " +
+                        items + " items (" + queue.getPendingCount() + " pending on disk)");
+            }
+
+            if (children != null) {
+                children.forEach(onSplit);
+                return;
+            }
+        }
+    }
+
+    private List<Partition> split(Partition partition) {
+        List<String> queries = splitter.split(partition.query);
+        if (queries == null || queries.size() < 2) return null;
+
+        List<Partition> children = new ArrayList<>(queries.size());
+        for (String query : queries) {
+            children.add(new Partition(query));
+        }
+        return children;
+    }
+
+    private int activePartitions() {
+        int active = 0;
+        for (Partition partition : partitions) {
+            if (!partition.complete) active++;
+        }
+        return active;
+    }
+
+    private List<DriveFile> dedupe(List<DriveFile> files) {
+        if (seenFileIds == null) return files;
+
+        List<DriveFile> fresh = new ArrayList<>(files.size());
+        for (DriveFile file : files) {
+            if (seenFileIds.add(LongHashSet.hash64(file.id))) {
+                fresh.add(file);
+            }
+        }
+        return fresh;
+    }
+
+    DriveFileSpillQueue getQueue() {
+        return queue;
+    }
+
+    boolean isResumed() {
+        return resumed;
+    }
+
+    synchronized int getPartitionCount() {
+        return partitions.size();
+    }
+
+    synchronized long getSplits() {
+        return splits;
+    }
+
+    synchronized long getPagesWalked() {
+        return pagesWalked;
+    }
+
+    synchronized long getItemsWalked() {
+        return itemsWalked;
+    }
+
+    synchronized long getDuplicatesSkipped() {
+        return duplicatesSkipped;
+    }
+
+    /**
+     * User xử lý xong - xóa state và spill file
+     */
+    void clear() throws IOException {
+        queue.delete();
+        if (stateFile.exists() && !stateFile.delete()) {
+            System.err.println("⚠️ Could not delete state file: " + stateFile.getAbsolutePath());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        queue.close();
+    }
+}
@@ -0,0 +1,16 @@
+package DrivePhanQuyen;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class DriveFile {
+    public String id;
+    public String name;
+    public String mimeType;
+    public boolean trashed;
+    public List<String> parents; // Chỉ có khi listing yêu cầu parents (folder tree mode)
+    // capabilities của user đang impersonate (null = listing không trả về)
+    public Boolean canShare;
+    public Boolean canEdit;
+    public List<DrivePermission> permissions = new ArrayList<>();
+}
@@ -0,0 +1,163 @@
+package DrivePhanQuyen;
+
+import com.google.gson.Gson;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Queue DriveFile lưu trên đĩa (append-only) để listing drive cực lớn
+ * không phải giữ toàn bộ DriveFile trong heap.
+ *
+ * Format: mỗi record = int độ dài + JSON (UTF-8) của một DriveFile.
+ * Writer chỉ append, các worker đọc tuần tự từ đầu file. Trong RAM chỉ còn
+ * buffer đọc/ghi - file được giải nén thành DriveFile lúc poll().
+ */
+class DriveFileSpillQueue implements Closeable {
+    private static final Gson GSON = new Gson();
+
+    private final File file;
+    private final FileOutputStream fileOut;
+    private final DataOutputStream writer;
+    private final DataInputStream reader;
+
+    private long appendedCount;
+    private long readCount = 0;
+    private boolean writerClosed = false;
+
+    DriveFileSpillQueue(File file) throws IOException {
+        this.file = file;
+        this.appendedCount = recoverExistingRecords(file);
+        this.fileOut = new FileOutputStream(file, true);
+        this.writer = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024));
+        this.reader = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+    }
+
+    /**
+     * Đếm record đã có (khi resume), cắt bỏ record cuối bị ghi dở do crash
+     */
+    private static long recoverExistingRecords(File file) throws IOException {
+        if (!file.exists()) return 0;
+
+        long count = 0;
+        long validLength = 0;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long length = raf.length();
+            while (validLength + 4 <= length) {
+                raf.seek(validLength);
+                int recordLength = raf.readInt();
+                if (recordLength < 0 || validLength + 4 + recordLength > length) break;
+                validLength += 4 + recordLength;
+                count++;
+            }
+            if (validLength < length) {
+                System.out.println("⚠️ Spill queue " + file.getName() + ": truncating " +
+                        (length - validLength) + " bytes of incomplete record");
+                raf.setLength(validLength);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Ghi một page xuống đĩa và fsync trước khi worker được thấy các record mới
+     */
+    synchronized void appendAll(List<DriveFile> files) throws IOException {
+        if (writerClosed) {
+            throw new IllegalStateException("Spill queue is closed for writing: " + file.getName());
+        }
+        for (DriveFile driveFile : files) {
+            byte[] bytes = GSON.toJson(driveFile).getBytes(StandardCharsets.UTF_8);
+            writer.writeInt(bytes.length);
+            writer.write(bytes);
+        }
+        writer.flush();
+        fileOut.getFD().sync();
+
+        appendedCount += files.size();
+        notifyAll();
+    }
+
+    /**
+     * Không còn record mới trong lần chạy này
+     */
+    synchronized void closeWriter() {
+        writerClosed = true;
+        notifyAll();
+    }
+
+    /**
+     * Lấy record kế tiếp, chờ tối đa timeout. Trả về null nếu hết thời gian
+     * hoặc queue đã cạn (xem isDrained()).
+     */
+    DriveFile poll(long timeout, TimeUnit unit) throws InterruptedException, IOException {
+        byte[] bytes;
+        synchronized (this) {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (readCount >= appendedCount) {
+                if (writerClosed) return null;
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) return null;
+                TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+            }
+
+            bytes = new byte[reader.readInt()];
+            reader.readFully(bytes);
+            readCount++;
+        }
+        // Parse JSON ngoài lock để các worker không chờ nhau
+        return GSON.fromJson(new String(bytes, StandardCharsets.UTF_8), DriveFile.class);
+    }
+
+    /**
+     * Đọc lại toàn bộ record đã ghi (từ đầu file, không ảnh hưởng vị trí poll).
+     * Dùng khi resume để dựng lại trạng thái từ các record của lần chạy trước.
+     */
+    void scan(Consumer<DriveFile> consumer) throws IOException {
+        long count;
+        synchronized (this) {
+            writer.flush();
+            count = appendedCount;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            for (long i = 0; i < count; i++) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                consumer.accept(GSON.fromJson(new String(bytes, StandardCharsets.UTF_8), DriveFile.class));
+            }
+        }
+    }
+
+    synchronized boolean isDrained() {
+        return writerClosed && readCount >= appendedCount;
+    }
+
+    synchronized long getAppendedCount() {
+        return appendedCount;
+    }
+
+    synchronized long getPendingCount() {
+        return appendedCount - readCount;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writerClosed = true;
+        notifyAll();
+        try {
+            writer.close();
+        } finally {
+            reader.close();
+        }
+    }
+
+    void delete() throws IOException {
+        close();
+        if (file.exists() && !file.delete()) {
+            System.err.println("⚠️ Could not delete spill file: " + file.getAbsolutePath());
+        }
+    }
+}
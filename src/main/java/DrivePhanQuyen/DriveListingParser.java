@@ -0,0 +1,385 @@
+package DrivePhanQuyen;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parse response files.list / changes.list của Drive trực tiếp từ InputStream bằng Gson JsonReader.
+ *
+ * Không dựng String cho cả response, không cắt substring từng object, không regex:
+ * token được đọc tuần tự và ghi thẳng vào DriveFile / DrivePermission.
+ * Field không biết (owners, ...) được skipValue().
+ */
+class DriveListingParser {
+
+    private DriveListingParser() {
+    }
+
+    /**
+     * Đọc một page files.list. Stream không bị đóng ở đây - caller đóng.
+     */
+    static FilePage parseFilePage(InputStream body) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        List<DriveFile> files = new ArrayList<>();
+        String nextPageToken = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if ("files".equals(key) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    DriveFile file = readFile(reader);
+                    if (file != null) {
+                        files.add(file);
+                    }
+                }
+                reader.endArray();
+            } else if ("nextPageToken".equals(key)) {
+                nextPageToken = nextStringOrNull(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new FilePage(files, nextPageToken);
+    }
+
+    /**
+     * Đọc một page changes.list. Chỉ giữ file còn tồn tại (không removed, không trong thùng rác).
+     * Page cuối có newStartPageToken thay cho nextPageToken -> FilePage.nextPageToken = null.
+     */
+    static FilePage parseChangePage(InputStream body) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        List<DriveFile> files = new ArrayList<>();
+        String nextPageToken = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if ("changes".equals(key) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    DriveFile file = readChange(reader);
+                    if (file != null && !file.trashed) {
+                        files.add(file);
+                    }
+                }
+                reader.endArray();
+            } else if ("nextPageToken".equals(key)) {
+                nextPageToken = nextStringOrNull(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new FilePage(files, nextPageToken);
+    }
+
+    private static DriveFile readChange(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+
+        DriveFile file = null;
+        boolean removed = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if ("file".equals(key)) {
+                file = readFile(reader);
+            } else if ("removed".equals(key)) {
+                removed = nextBooleanOrFalse(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return removed ? null : file;
+    }
+
+    /**
+     * Đọc một page drives.list. Mỗi shared drive trả về dạng DriveFile folder (id = driveId, name).
+     */
+    static FilePage parseDrivePage(InputStream body) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        List<DriveFile> drives = new ArrayList<>();
+        String nextPageToken = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if ("drives".equals(key) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    DriveFile drive = readFile(reader);
+                    if (drive != null) {
+                        drive.mimeType = FolderTree.FOLDER_MIME_TYPE;
+                        drives.add(drive);
+                    }
+                }
+                reader.endArray();
+            } else if ("nextPageToken".equals(key)) {
+                nextPageToken = nextStringOrNull(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new FilePage(drives, nextPageToken);
+    }
+
+    /**
+     * Đọc một page permissions.list vào permissions, trả về nextPageToken
+     */
+    static String parsePermissionPage(InputStream body, List<DrivePermission> permissions) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String nextPageToken = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if ("permissions".equals(key)) {
+                readPermissions(reader, permissions);
+            } else if ("nextPageToken".equals(key)) {
+                nextPageToken = nextStringOrNull(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return nextPageToken;
+    }
+
+    /**
+     * Đọc response changes.getStartPageToken
+     */
+    static String parseStartPageToken(InputStream body) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String token = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("startPageToken".equals(reader.nextName())) {
+                token = nextStringOrNull(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return token;
+    }
+
+    /**
+     * Đọc một object file. Trả về null nếu không có id (giống parser cũ).
+     */
+    static DriveFile readFile(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+
+        DriveFile file = new DriveFile();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            switch (key) {
+                case "id":
+                    file.id = nextStringOrNull(reader);
+                    break;
+                case "name":
+                    file.name = nextStringOrNull(reader);
+                    break;
+                case "mimeType":
+                    file.mimeType = nextStringOrNull(reader);
+                    break;
+                case "trashed":
+                    file.trashed = nextBooleanOrFalse(reader);
+                    break;
+                case "parents":
+                    file.parents = readStringArray(reader);
+                    break;
+                case "permissions":
+                    readPermissions(reader, file.permissions);
+                    break;
+                case "capabilities":
+                    readCapabilities(reader, file);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (file.id == null) return null;
+        if (file.name == null) file.name = "Unnamed File";
+        return file;
+    }
+
+    private static void readCapabilities(JsonReader reader, DriveFile file) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return;
+        }
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if ("canShare".equals(key)) {
+                file.canShare = nextBooleanOrFalse(reader);
+            } else if ("canEdit".equals(key)) {
+                file.canEdit = nextBooleanOrFalse(reader);
+            } else if ("canManageMembers".equals(key)) {
+                // drives.list: quản lý thành viên = chia sẻ được gốc của shared drive
+                file.canShare = nextBooleanOrFalse(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * permissionDetails: permission được coi là kế thừa nếu mọi detail đều inherited=true.
+     * Có một detail trực tiếp (inherited=false) là phải giữ write ở file này.
+     * inheritedFrom = folder của detail kế thừa có role mạnh nhất (role hiệu lực của permission).
+     */
+    private static void readPermissionDetails(JsonReader reader, DrivePermission permission) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return;
+        }
+
+        boolean anyInherited = false;
+        boolean anyDirect = false;
+        int inheritedStrength = -1;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+
+            boolean inherited = false;
+            String inheritedFrom = null;
+            String role = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String key = reader.nextName();
+                if ("inherited".equals(key)) {
+                    inherited = nextBooleanOrFalse(reader);
+                } else if ("inheritedFrom".equals(key)) {
+                    inheritedFrom = nextStringOrNull(reader);
+                } else if ("role".equals(key)) {
+                    role = nextStringOrNull(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (inherited) {
+                anyInherited = true;
+                int strength = DriveServiceComplete.roleStrength(role);
+                if (inheritedFrom != null && strength > inheritedStrength) {
+                    permission.inheritedFrom = inheritedFrom;
+                    inheritedStrength = strength;
+                }
+            } else {
+                anyDirect = true;
+            }
+        }
+        reader.endArray();
+
+        permission.inherited = anyInherited && !anyDirect;
+    }
+
+    private static void readPermissions(JsonReader reader, List<DrivePermission> permissions) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return;
+        }
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+
+            DrivePermission permission = new DrivePermission();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String key = reader.nextName();
+                switch (key) {
+                    case "role":
+                        permission.role = nextStringOrNull(reader);
+                        break;
+                    case "emailAddress":
+                        permission.emailAddress = nextStringOrNull(reader);
+                        break;
+                    case "type":
+                        permission.type = nextStringOrNull(reader);
+                        break;
+                    case "permissionDetails":
+                        readPermissionDetails(reader, permission);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (permission.role != null) {
+                permissions.add(permission);
+            }
+        }
+        reader.endArray();
+    }
+
+    private static List<String> readStringArray(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return null;
+        }
+
+        List<String> values = new ArrayList<>(1);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String value = nextStringOrNull(reader);
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        reader.endArray();
+        return values;
+    }
+
+    static boolean nextBooleanOrFalse(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.BOOLEAN) {
+            return reader.nextBoolean();
+        }
+        reader.skipValue();
+        return false;
+    }
+
+    static String nextStringOrNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.STRING) {
+            return reader.nextString();
+        }
+        reader.skipValue();
+        return null;
+    }
+}
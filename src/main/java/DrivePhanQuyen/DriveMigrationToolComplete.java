@@ -21,6 +21,8 @@ public class DriveMigrationToolComplete extends JFrame {
     private DriveServiceComplete driveService;
     private String serviceAccountJsonPath = "";
     private String privateKeyContent = "";
+    // Các tùy chọn nâng cao đọc từ drive-migration-config.properties
+    private final Properties settings = new Properties();
 
     // Threading
     private ExecutorService executor;
@@ -511,6 +513,9 @@ public class DriveMigrationToolComplete extends JFrame {
                 System.err.println("FORCE SHUTDOWN: Executor shutdown error: " + e.getMessage());
             }
         }
+        if (driveService != null) {
+            driveService.closeJournal();
+        }
 
         System.out.println("FORCE SHUTDOWN: Exiting...");
 
@@ -636,6 +641,8 @@ public class DriveMigrationToolComplete extends JFrame {
                         privateKeyContent
                 );
             }
+            applyDriveSettings(driveService);
+            driveService.beginMigrationRun();
 
             // Get users and mapping
             List<UserRecord> users = sheetsService.getUserList();
@@ -643,11 +650,20 @@ public class DriveMigrationToolComplete extends JFrame {
 
             // Filter pending users
             List<UserRecord> pendingUsers = new ArrayList<>();
+            int incrementalUsers = 0;
             for (UserRecord user : users) {
                 if ("Not Started".equals(user.status) || "In Progress".equals(user.status)) {
                     pendingUsers.add(user);
+                } else if (driveService.isIncrementalMode() && "Completed".equals(user.status)
+                        && driveService.hasChangeToken(user.email)) {
+                    // Catch-up pass: chỉ đọc changes.list từ lần migrate xong trước
+                    pendingUsers.add(user);
+                    incrementalUsers++;
                 }
             }
+            if (incrementalUsers > 0) {
+                appendLog("🔁 " + incrementalUsers + " completed users queued for incremental catch-up");
+            }
 
             if (pendingUsers.isEmpty()) {
                 JOptionPane.showMessageDialog(this, "No users need processing.",
@@ -677,8 +693,13 @@ public class DriveMigrationToolComplete extends JFrame {
             stopButton.setEnabled(true);
             statusLabel.setText("Migration in progress...");
 
-            appendLog(String.format("📊 Processing %d users with %d threads",
-                    pendingUsers.size(), threadCount));
+            if (driveService.isFairScheduling()) {
+                appendLog(String.format("📊 Processing %d users, %d at a time, %d shared file slots",
+                        pendingUsers.size(), threadCount, driveService.getGlobalInFlight()));
+            } else {
+                appendLog(String.format("📊 Processing %d users with %d threads",
+                        pendingUsers.size(), threadCount));
+            }
 
             // Reset statistics
             totalProcessedFiles.set(0);
@@ -696,6 +717,9 @@ public class DriveMigrationToolComplete extends JFrame {
                 executor.shutdown();
                 try {
                     if (executor.awaitTermination(24, TimeUnit.HOURS)) {
+                        driveService.closeJournal();
+                        List<String> unfinishedDrives = driveService.isSharedDrives()
+                                ? driveService.getUnfinishedSharedDrives() : Collections.<String>emptyList();
                         // THÊM DÒNG NÀY:
                         sheetsService.flushAllPendingUpdates();
 
@@ -705,6 +729,13 @@ public class DriveMigrationToolComplete extends JFrame {
                             stopButton.setEnabled(false);
                             statusLabel.setText("Migration completed");
                             appendLog("🎉 Migration completed successfully!");
+                            appendLog(String.format("🔑 Sheets token cache: %d hits, %d misses",
+                                    sheetsService.getTokenCacheHits(), sheetsService.getTokenCacheMisses()));
+                            if (!unfinishedDrives.isEmpty()) {
+                                appendLog("⚠ " + unfinishedDrives.size() + " shared drive chưa được xử lý " +
+                                        "(không có organizer trong danh sách hoặc organizer lỗi): " +
+                                        String.join(", ", unfinishedDrives));
+                            }
                         });
                     }
                 } catch (InterruptedException e) {
@@ -720,6 +751,120 @@ public class DriveMigrationToolComplete extends JFrame {
         }
     }
 
+    /**
+     * Áp dụng các tùy chọn nâng cao từ file cấu hình
+     */
+    private void applyDriveSettings(DriveServiceComplete service) {
+        boolean batchWrites = Boolean.parseBoolean(settings.getProperty("batchPermissionWrites", "false"));
+        service.setBatchPermissionWrites(batchWrites);
+
+        boolean streaming = Boolean.parseBoolean(settings.getProperty("streamingMode", "false"));
+        service.setStreamingMode(streaming);
+
+        boolean queryPlanning = Boolean.parseBoolean(settings.getProperty("queryPlanning", "false"));
+        service.setQueryPlanning(queryPlanning);
+
+        boolean incremental = Boolean.parseBoolean(settings.getProperty("incrementalMode", "false"));
+        service.setIncrementalMode(incremental);
+
+        boolean skipInherited = Boolean.parseBoolean(settings.getProperty("skipInheritedPermissions", "false"));
+        service.setSkipInheritedPermissions(skipInherited);
+
+        boolean folderTree = Boolean.parseBoolean(settings.getProperty("folderTreeMode", "false"));
+        service.setFolderTreeMode(folderTree);
+
+        boolean sharedDrives = Boolean.parseBoolean(settings.getProperty("sharedDrives", "false"));
+        service.setSharedDrives(sharedDrives);
+
+        boolean globalDedup = Boolean.parseBoolean(settings.getProperty("globalWriteDedup", "false"));
+        service.setGlobalWriteDedup(globalDedup);
+
+        boolean virtualThreads = Boolean.parseBoolean(settings.getProperty("virtualThreads", "false"));
+        service.setVirtualThreads(virtualThreads);
+
+        try {
+            service.setListingPartitions(Integer.parseInt(settings.getProperty("listingPartitions", "0").trim()));
+        } catch (NumberFormatException e) {
+            appendLog("⚠ listingPartitions không hợp lệ, tắt partitioned listing: " + e.getMessage());
+            service.setListingPartitions(0);
+        }
+
+        boolean fairScheduling = Boolean.parseBoolean(settings.getProperty("fairScheduling", "false"));
+        try {
+            service.setFairScheduling(fairScheduling,
+                    Integer.parseInt(settings.getProperty("globalInFlight",
+                            String.valueOf(DriveServiceComplete.DEFAULT_GLOBAL_IN_FLIGHT)).trim()),
+                    Integer.parseInt(settings.getProperty("perUserInFlight",
+                            String.valueOf(DriveServiceComplete.DEFAULT_PER_USER_IN_FLIGHT)).trim()));
+        } catch (IllegalArgumentException e) {
+            appendLog("⚠ Cấu hình fair scheduling không hợp lệ, dùng mặc định: " + e.getMessage());
+            service.setFairScheduling(fairScheduling, DriveServiceComplete.DEFAULT_GLOBAL_IN_FLIGHT,
+                    DriveServiceComplete.DEFAULT_PER_USER_IN_FLIGHT);
+        }
+
+        try {
+            service.setRateLimiter(new TokenBucketRateLimiter(
+                    Double.parseDouble(settings.getProperty("userWritesPerSecond",
+                            String.valueOf(DriveServiceComplete.DEFAULT_USER_WRITES_PER_SECOND))),
+                    Integer.parseInt(settings.getProperty("userBurst",
+                            String.valueOf(DriveServiceComplete.DEFAULT_USER_BURST))),
+                    Double.parseDouble(settings.getProperty("projectWritesPerSecond",
+                            String.valueOf(DriveServiceComplete.DEFAULT_PROJECT_WRITES_PER_SECOND))),
+                    Integer.parseInt(settings.getProperty("projectBurst",
+                            String.valueOf(DriveServiceComplete.DEFAULT_PROJECT_BURST)))
+            ));
+        } catch (IllegalArgumentException e) {
+            appendLog("⚠ Cấu hình rate limit không hợp lệ, dùng mặc định: " + e.getMessage());
+        }
+        appendLog("⚙ Rate limit: " + service.getRateLimiter().describe());
+
+        if (batchWrites) {
+            int batchParts = service.batchPartLimit();
+            appendLog("⚙ Batch permission writes: ON (tối đa " + batchParts + " requests/batch)");
+            if (batchParts < DriveBatchRequest.MAX_PARTS) {
+                appendLog("   ℹ Batch giới hạn theo burst của rate limit - tăng userBurst/projectBurst (tối đa " +
+                        DriveBatchRequest.MAX_PARTS + ") để gửi batch lớn hơn");
+            }
+        }
+        if (streaming) {
+            appendLog("⚙ Streaming mode: ON (xử lý file song song với listing)");
+        }
+        if (queryPlanning) {
+            appendLog("⚙ Query planning: ON (chỉ list file đang share cho email cũ trong mapping)");
+        }
+        if (incremental) {
+            appendLog("⚙ Incremental mode: ON (user đã Completed chỉ xử lý file thay đổi từ lần trước)");
+        }
+        if (folderTree) {
+            appendLog("⚙ Folder tree mode: ON (folder xử lý từ gốc xuống trước file, bỏ write đã được folder cha cấp)");
+        }
+        if (sharedDrives) {
+            appendLog("⚙ Shared drives: ON (mỗi shared drive chỉ được list và xử lý một lần)");
+        }
+        if (service.getListingPartitions() > 0) {
+            appendLog("⚙ Partitioned listing: ON (tối đa " + service.getListingPartitions() +
+                    " partition modifiedTime list song song)");
+        }
+        if (globalDedup) {
+            appendLog("⚙ Global write dedup: ON (mỗi write (file, email mới, role) chỉ gửi một lần cho mọi user)");
+        }
+        if (skipInherited && folderTree) {
+            appendLog("⚙ Skip inherited permissions: ON (bỏ write kế thừa khi folder nguồn đã được cấp quyền)");
+        } else if (skipInherited) {
+            appendLog("⚠ Skip inherited permissions cần Folder tree mode - permission kế thừa vẫn được ghi");
+        }
+        if (fairScheduling) {
+            appendLog("⚙ Fair scheduling: ON (task file của mọi user dùng chung " + service.getGlobalInFlight() +
+                    " slot, tối đa " + service.getPerUserInFlight() + " mỗi user; số thread = số user list cùng lúc)");
+        }
+        if (service.isVirtualThreads()) {
+            appendLog("⚙ Virtual threads: ON (số request đồng thời do concurrency limiter + rate limit quyết định)");
+        } else if (virtualThreads) {
+            appendLog("⚠ Virtual threads cần JDK 21+ (đang chạy " + System.getProperty("java.version") +
+                    "), dùng thread pool cố định");
+        }
+    }
+
     private void processUser(UserRecord user, Map<String, String> userMapping) {
         if (migrationStopped) return;
 
@@ -776,6 +921,9 @@ public class DriveMigrationToolComplete extends JFrame {
                 appendLog(String.format("✓ User %s: %d files processed (%d success, %d failed, %d restricted)",
                         user.email, result.totalFiles, result.successFiles,
                         result.failedFiles, result.restrictedFiles));
+                appendLog(String.format("⚙ Concurrency: limit %d, in-flight %d, shed %d",
+                        driveService.getConcurrencyLimit(), driveService.getInFlightRequests(),
+                        driveService.getShedCount()));
             });
 
             // Update Google Sheets
@@ -787,7 +935,7 @@ public class DriveMigrationToolComplete extends JFrame {
 
             sheetsService.updateUserStatus(user.email, user.rowIndex,
                     result.success ? "Completed" : "Failed", stats);
-           // sheetsService.createOrUpdateUserDetailSheet(user.email, result.fileResults);
+           // Chi tiết từng file nằm trong result.resultFile (FileResultSink.replay để đọc lại)
 
         } catch (Exception e) {
             SwingUtilities.invokeLater(() -> {
@@ -841,6 +989,9 @@ public class DriveMigrationToolComplete extends JFrame {
             }
             executor = null;
         }
+        if (driveService != null) {
+            driveService.closeJournal();
+        }
 
         // Reset "In Progress" users back to "Not Started"
         SwingUtilities.invokeLater(() -> {
@@ -1092,7 +1243,7 @@ public class DriveMigrationToolComplete extends JFrame {
                         // Test getting files for first user
                         try {
                             appendLog("Đang kiểm tra lấy danh sách file cho: " + testUser);
-                            List<DriveFile> files = testDrive.getAllFiles(testUser);
+                            List<DriveFile> files = testDrive.getFirstFilesPage(testUser);
                             appendLog("✓ Tìm thấy " + files.size() + " file cho người dùng: " + testUser);
 
                             // Show first few files
@@ -1222,7 +1373,9 @@ public class DriveMigrationToolComplete extends JFrame {
     }
 
     private void saveConfiguration() {
+        // Giữ lại các tùy chọn nâng cao đã có trong file
         Properties props = new Properties();
+        props.putAll(settings);
         props.setProperty("serviceAccountJsonPath", serviceAccountJsonPath);
         props.setProperty("serviceAccountEmail", serviceAccountEmailField.getText());
         props.setProperty("spreadsheetId", spreadsheetIdField.getText());
@@ -1239,6 +1392,7 @@ public class DriveMigrationToolComplete extends JFrame {
         Properties props = new Properties();
         try (FileInputStream in = new FileInputStream("drive-migration-config.properties")) {
             props.load(in);
+            settings.putAll(props);
             serviceAccountJsonPath = props.getProperty("serviceAccountJsonPath", "");
             serviceAccountEmailField.setText(props.getProperty("serviceAccountEmail", ""));
             spreadsheetIdField.setText(props.getProperty("spreadsheetId", ""));
@@ -0,0 +1,10 @@
+package DrivePhanQuyen;
+
+class DrivePermission {
+    public String role;
+    public String emailAddress;
+    public String type;
+    // permissionDetails: true nếu permission chỉ có dạng kế thừa (không có grant trực tiếp trên file)
+    public boolean inherited;
+    public String inheritedFrom;
+}
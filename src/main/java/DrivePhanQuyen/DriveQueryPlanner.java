@@ -0,0 +1,113 @@
+package DrivePhanQuyen;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Lập query files.list chỉ trả về file đang được share cho các email cũ trong mapping.
+ *
+ * Mỗi email cũ thành một clause ('old@x' in readers or 'old@x' in writers).
+ * Danh sách clause dài được chia thành nhiều query, mỗi query dưới giới hạn
+ * độ dài và số email -> listing tỷ lệ với khối lượng việc thật, không với kích thước drive.
+ * Các query có thể trùng file (file share cho 2 email cũ) - enumerator dedupe theo fileId.
+ */
+class DriveQueryPlanner {
+    static final String BASE_QUERY = "trashed=false";
+
+    // q đi trên URL (sau khi encode dài hơn ~1.5 lần) - giữ xa giới hạn URL của Google
+    static final int MAX_QUERY_LENGTH = 1500;
+    // Drive từ chối query quá nhiều điều kiện ("The query is too complex")
+    static final int MAX_EMAILS_PER_QUERY = 20;
+
+    // Chia listing theo modifiedTime: không chia khoảng ngắn hơn 1 phút
+    static final long MIN_RANGE_SECONDS = 60;
+    // Mốc dưới giả định để tính điểm giữa khi khoảng chưa có cận dưới (khoảng con vẫn để mở)
+    private static final Instant ASSUMED_OLDEST = Instant.parse("2005-01-01T00:00:00Z");
+    private static final Pattern RANGE_SUFFIX = Pattern.compile(
+            "^(.*?)(?: and modifiedTime >= '([^']+)')?(?: and modifiedTime < '([^']+)')?$", Pattern.DOTALL);
+
+    private DriveQueryPlanner() {
+    }
+
+    /**
+     * Query cho từng nhóm email cũ. Thứ tự ổn định (email sort) để state resume khớp giữa các lần chạy.
+     */
+    static List<String> planQueries(Collection<String> oldEmails) {
+        SortedSet<String> emails = new TreeSet<>();
+        for (String email : oldEmails) {
+            if (email != null && !email.trim().isEmpty()) {
+                emails.add(email.trim().toLowerCase());
+            }
+        }
+
+        List<String> queries = new ArrayList<>();
+        StringBuilder clauses = new StringBuilder();
+        int emailsInQuery = 0;
+
+        for (String email : emails) {
+            String clause = clause(email);
+            int projectedLength = wrap(clauses).length() + (clauses.length() > 0 ? 4 : 0) + clause.length();
+
+            if (emailsInQuery > 0 && (projectedLength > MAX_QUERY_LENGTH || emailsInQuery >= MAX_EMAILS_PER_QUERY)) {
+                queries.add(wrap(clauses));
+                clauses.setLength(0);
+                emailsInQuery = 0;
+            }
+
+            if (clauses.length() > 0) clauses.append(" or ");
+            clauses.append(clause);
+            emailsInQuery++;
+        }
+
+        if (emailsInQuery > 0) {
+            queries.add(wrap(clauses));
+        }
+        return queries;
+    }
+
+    private static String clause(String email) {
+        String quoted = "'" + escape(email) + "'";
+        return quoted + " in readers or " + quoted + " in writers";
+    }
+
+    private static String wrap(CharSequence clauses) {
+        return BASE_QUERY + " and (" + clauses + ")";
+    }
+
+    /**
+     * Chia query làm 2 theo modifiedTime (nửa trước < mid <= nửa sau). Khoảng đầu/cuối giữ mở
+     * để hai nửa luôn phủ đúng tập file của query gốc. Trả về null nếu khoảng đã quá hẹp.
+     */
+    static List<String> splitByModifiedTime(String query, Instant now) {
+        Matcher matcher = RANGE_SUFFIX.matcher(query);
+        if (!matcher.matches()) return null;
+
+        String base = matcher.group(1);
+        Instant from = matcher.group(2) != null ? Instant.parse(matcher.group(2)) : null;
+        Instant to = matcher.group(3) != null ? Instant.parse(matcher.group(3)) : null;
+
+        Instant low = from != null ? from : ASSUMED_OLDEST;
+        Instant high = to != null ? to : now;
+        long seconds = high.getEpochSecond() - low.getEpochSecond();
+        if (seconds < 2 * MIN_RANGE_SECONDS) return null;
+
+        Instant mid = low.plusSeconds(seconds / 2).truncatedTo(ChronoUnit.SECONDS);
+        return Arrays.asList(withModifiedRange(base, from, mid), withModifiedRange(base, mid, to));
+    }
+
+    static String withModifiedRange(String base, Instant from, Instant to) {
+        return base +
+                (from != null ? " and modifiedTime >= '" + from + "'" : "") +
+                (to != null ? " and modifiedTime < '" + to + "'" : "");
+    }
+
+    /**
+     * Escape theo cú pháp query của Drive: \ và ' phải có \ đứng trước
+     */
+    static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("'", "\\'");
+    }
+}
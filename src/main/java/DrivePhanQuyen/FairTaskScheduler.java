@@ -0,0 +1,282 @@
+package DrivePhanQuyen;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Scheduler task file/batch dùng chung cho mọi user (thay cho pool FileProcessor riêng của từng user).
+ *
+ * - Mỗi user một lane (ExecutorService), worker rảnh lấy task của lane đang dùng ít thời gian
+ *   worker nhất (fair queuing theo thời gian chạy thực) -> user 200k file không giữ worker
+ *   trong khi user nhỏ chờ, và user nhỏ xong thì worker chuyển sang user còn việc
+ * - Lane mới có việc bắt đầu từ mức thấp nhất của các lane đang chạy (không "để dành" phần đã nhường)
+ * - Quota: mỗi user tối đa perUserLimit task đang chạy; toàn process tối đa workers task
+ *
+ * Dùng ReentrantLock (không synchronized) để worker có thể là virtual thread.
+ */
+class FairTaskScheduler {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+    private final List<Lane> lanes = new ArrayList<>();
+    private final ExecutorService runner;
+    private final int workers;
+    private final int perUserLimit;
+    private int running;
+    private long completedTasks;
+    private boolean shutdown;
+
+    /**
+     * @param runner executor chạy vòng lặp worker (pool cố định >= workers thread, hoặc virtual thread)
+     */
+    FairTaskScheduler(ExecutorService runner, int workers, int perUserLimit) {
+        if (workers < 1 || perUserLimit < 1) {
+            throw new IllegalArgumentException("workers and perUserLimit must be >= 1");
+        }
+        this.runner = runner;
+        this.workers = workers;
+        this.perUserLimit = Math.min(perUserLimit, workers);
+        for (int i = 0; i < workers; i++) {
+            runner.execute(this::workLoop);
+        }
+    }
+
+    /**
+     * Lane cho một user. shutdownNow() của lane chỉ bỏ / cancel task của user đó.
+     */
+    ExecutorService lane(String userEmail) {
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new RejectedExecutionException("Scheduler is shut down");
+            }
+            Lane lane = new Lane(userEmail);
+            lanes.add(lane);
+            return lane;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getWorkers() {
+        return workers;
+    }
+
+    int getPerUserLimit() {
+        return perUserLimit;
+    }
+
+    /**
+     * Dừng worker khi hết việc. Lane đang có task vẫn chạy xong.
+     */
+    void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            workAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        runner.shutdown();
+    }
+
+    String describe() {
+        lock.lock();
+        try {
+            return String.format("fair scheduler: %d workers, %d per user, %d users, %d running, %d done",
+                    workers, perUserLimit, lanes.size(), running, completedTasks);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void workLoop() {
+        while (true) {
+            Lane lane;
+            Runnable task;
+            lock.lock();
+            try {
+                while ((lane = pickLane()) == null) {
+                    if (shutdown && !hasQueuedWork()) return;
+                    workAvailable.await();
+                }
+                task = lane.queue.poll();
+                lane.running.add(task);
+                running++;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            long start = System.nanoTime();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.println("⚠️ Task for " + lane.userEmail + " failed: " + e.getMessage());
+            } finally {
+                // cancel(true) của task (timeout) không được lan sang task kế tiếp trên thread này
+                Thread.interrupted();
+                lock.lock();
+                try {
+                    lane.running.remove(task);
+                    lane.serviceNanos += System.nanoTime() - start;
+                    running--;
+                    completedTasks++;
+                    lane.removeIfDone();
+                    workAvailable.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Lane có task chờ, chưa hết quota, dùng ít thời gian worker nhất
+     */
+    private Lane pickLane() {
+        Lane best = null;
+        for (Lane lane : lanes) {
+            if (lane.queue.isEmpty() || lane.running.size() >= perUserLimit) continue;
+            if (best == null || lane.serviceNanos < best.serviceNanos) {
+                best = lane;
+            }
+        }
+        return best;
+    }
+
+    private boolean hasQueuedWork() {
+        for (Lane lane : lanes) {
+            if (!lane.queue.isEmpty()) return true;
+        }
+        return false;
+    }
+
+    private long minActiveServiceNanos() {
+        long min = Long.MAX_VALUE;
+        for (Lane lane : lanes) {
+            if (lane.isActive() && lane.serviceNanos < min) {
+                min = lane.serviceNanos;
+            }
+        }
+        return min;
+    }
+
+    /**
+     * Hàng đợi task của một user, nhìn từ ngoài như một ExecutorService
+     */
+    private class Lane extends AbstractExecutorService {
+        final String userEmail;
+        final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+        final Set<Runnable> running = Collections.newSetFromMap(new IdentityHashMap<>());
+        final Condition terminated = lock.newCondition();
+        long serviceNanos;
+        boolean closed;
+
+        Lane(String userEmail) {
+            this.userEmail = userEmail;
+        }
+
+        boolean isActive() {
+            return !queue.isEmpty() || !running.isEmpty();
+        }
+
+        /**
+         * Gọi khi đang giữ lock
+         */
+        void removeIfDone() {
+            if (closed && !isActive()) {
+                lanes.remove(this);
+                terminated.signalAll();
+            }
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            Objects.requireNonNull(command);
+            lock.lock();
+            try {
+                if (closed || shutdown) {
+                    throw new RejectedExecutionException("Lane for " + userEmail + " is shut down");
+                }
+                if (!isActive()) {
+                    long floor = minActiveServiceNanos();
+                    if (floor != Long.MAX_VALUE && floor > serviceNanos) {
+                        serviceNanos = floor;
+                    }
+                }
+                queue.add(command);
+                workAvailable.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            lock.lock();
+            try {
+                closed = true;
+                removeIfDone();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            lock.lock();
+            try {
+                closed = true;
+                List<Runnable> pending = new ArrayList<>(queue);
+                queue.clear();
+                for (Runnable task : running) {
+                    if (task instanceof Future) {
+                        ((Future<?>) task).cancel(true);
+                    }
+                }
+                removeIfDone();
+                return pending;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean isShutdown() {
+            lock.lock();
+            try {
+                return closed;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean isTerminated() {
+            lock.lock();
+            try {
+                return closed && !isActive();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            long nanos = unit.toNanos(timeout);
+            lock.lock();
+            try {
+                while (!(closed && !isActive())) {
+                    if (nanos <= 0) return false;
+                    nanos = terminated.awaitNanos(nanos);
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package DrivePhanQuyen;
+
+import java.util.List;
+
+class FilePage {
+    public final List<DriveFile> files;
+    public final String nextPageToken;
+
+    FilePage(List<DriveFile> files, String nextPageToken) {
+        this.files = files;
+        this.nextPageToken = nextPageToken;
+    }
+}
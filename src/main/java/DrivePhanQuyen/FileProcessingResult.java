@@ -0,0 +1,20 @@
+package DrivePhanQuyen;
+
+class FileProcessingResult {
+    public String fileName;
+    public String fileId;
+    public String fileType;
+    public String permissionType;
+    public String status;
+    public String oldEmail;
+    public String newEmail;
+    public String role;
+    public String errorMessage;
+    public int permissionsAdded = 0;
+    public int permissionsResumed = 0; // Đã thêm ở lần chạy trước (theo journal)
+    public int permissionsAlreadyPresent = 0; // Email mới đã có role bằng/mạnh hơn - không gửi write
+    public int permissionsInherited = 0; // Kế thừa từ folder đang migrate - folder nhận write thay
+    public int permissionsCoveredByAncestor = 0; // Folder tổ tiên đã cấp role bằng/mạnh hơn (folder tree mode)
+    public int permissionsHandledElsewhere = 0; // User khác đã claim cùng (fileId, email mới, role)
+    public int requestsAvoided = 0; // Write không gửi vì capabilities cho biết chắc chắn sẽ bị từ chối
+}
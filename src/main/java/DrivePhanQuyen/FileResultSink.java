@@ -0,0 +1,148 @@
+package DrivePhanQuyen;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Nơi nhận FileProcessingResult của một user thay cho list trong MigrationResult.
+ *
+ * - Mỗi kết quả được ghi ngay xuống migration-results/results_<user>_<thời điểm>.jsonl.gz
+ *   (JSON lines, gzip) rồi bỏ khỏi heap -> bộ nhớ không tăng theo số file
+ * - Append-only, mỗi lần chạy một file riêng (gzip dở do crash không làm hỏng lần chạy sau),
+ *   đọc lại bằng replay(). Chỉ giữ KEEP_RUNS_PER_USER file gần nhất của mỗi user
+ * - Subscriber (UI, sheet, ...) nhận từng kết quả theo thứ tự ghi; subscriber lỗi chỉ được log
+ */
+class FileResultSink implements Closeable {
+    static final File RESULTS_DIR = new File("migration-results");
+
+    private static final Gson GSON = new Gson();
+    private static final int FLUSH_EVERY = 1000;
+    // Số file kết quả (kể cả lần chạy hiện tại) giữ lại cho mỗi user
+    static final int KEEP_RUNS_PER_USER = 5;
+
+    /**
+     * Nhận từng kết quả file ngay khi được ghi vào sink
+     */
+    interface Subscriber {
+        void onResult(String userEmail, FileProcessingResult result);
+    }
+
+    private final String userEmail;
+    private final File file;
+    private final Writer writer;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private long written;
+
+    FileResultSink(String userEmail) throws IOException {
+        if (!RESULTS_DIR.exists() && !RESULTS_DIR.mkdirs()) {
+            throw new IOException("Could not create results directory: " + RESULTS_DIR.getAbsolutePath());
+        }
+        this.userEmail = userEmail;
+        this.file = new File(RESULTS_DIR, "results_" + DriveEnumerator.fileSafe(userEmail) + "_" +
+                System.currentTimeMillis() + ".jsonl.gz");
+        // syncFlush: mỗi flush() đẩy hết dữ liệu đã nén xuống file -> crash chỉ mất phần sau lần flush cuối
+        this.writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(new FileOutputStream(file), 64 * 1024, true), StandardCharsets.UTF_8));
+        deleteOldRuns(userEmail);
+    }
+
+    /**
+     * Xóa file kết quả cũ của user, chỉ giữ KEEP_RUNS_PER_USER file mới nhất
+     */
+    private static void deleteOldRuns(String userEmail) {
+        String prefix = "results_" + DriveEnumerator.fileSafe(userEmail) + "_";
+        String suffix = ".jsonl.gz";
+        File[] runs = RESULTS_DIR.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(suffix) &&
+                name.substring(prefix.length(), name.length() - suffix.length()).matches("\\d+"));
+        if (runs == null || runs.length <= KEEP_RUNS_PER_USER) return;
+
+        // Tên chứa thời điểm tạo -> mới nhất trước
+        Arrays.sort(runs, Comparator.comparingLong((File run) -> Long.parseLong(
+                run.getName().substring(prefix.length(), run.getName().length() - suffix.length()))).reversed());
+        for (int i = KEEP_RUNS_PER_USER; i < runs.length; i++) {
+            if (!runs[i].delete()) {
+                System.err.println("⚠️ Could not delete old results file " + runs[i].getAbsolutePath());
+            }
+        }
+    }
+
+    void subscribe(Subscriber subscriber) {
+        if (subscriber != null) {
+            subscribers.add(subscriber);
+        }
+    }
+
+    /**
+     * Ghi một kết quả rồi chuyển cho subscribers. Lỗi ghi đĩa chỉ được log - không làm hỏng migration.
+     */
+    void accept(FileProcessingResult result) {
+        synchronized (this) {
+            try {
+                writer.write(GSON.toJson(result));
+                writer.write('\n');
+                if (++written % FLUSH_EVERY == 0) {
+                    writer.flush();
+                }
+            } catch (IOException e) {
+                System.err.println("⚠️ Could not write result for " + result.fileId + " to " + file.getName() + ": " + e.getMessage());
+            }
+        }
+
+        for (Subscriber subscriber : subscribers) {
+            try {
+                subscriber.onResult(userEmail, result);
+            } catch (RuntimeException e) {
+                // Subscriber lỗi (UI, sheet, ...) không được làm mất kết quả của file / subscriber khác
+                System.err.println("⚠️ Result subscriber failed for " + result.fileId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    synchronized long getWrittenCount() {
+        return written;
+    }
+
+    /**
+     * Đọc lại kết quả của một lần chạy, từng dòng một.
+     * Phần cuối bị cắt do crash được bỏ qua.
+     */
+    static void replay(File file, Consumer<FileProcessingResult> consumer) throws IOException {
+        if (!file.exists()) return;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new FileInputStream(file), 64 * 1024), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                FileProcessingResult result;
+                try {
+                    result = GSON.fromJson(line, FileProcessingResult.class);
+                } catch (JsonParseException e) {
+                    continue; // Dòng ghi dở
+                }
+                consumer.accept(result);
+            }
+        } catch (EOFException e) {
+            // Gzip member cuối không có trailer (dừng giữa chừng) - các dòng đã đọc vẫn dùng được
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
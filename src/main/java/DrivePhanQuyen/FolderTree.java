@@ -0,0 +1,149 @@
+package DrivePhanQuyen;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cây folder của một user dựng từ listing (chỉ folder, file không được giữ).
+ *
+ * - Biết folder nào có trong listing
+ * - Folder tree mode: giữ folder (nén trong CompactFileStore) để xử lý theo từng tầng
+ *   (BFS, folder cha trước), ghi lại grant (email mới, role) đã có trên từng folder -> write ở con bị bỏ nếu
+ *   một folder tổ tiên đã cấp role bằng hoặc mạnh hơn (Drive tự lan quyền xuống)
+ *
+ * Thread-safe: listing và worker cùng đọc/ghi.
+ */
+class FolderTree {
+    static final String FOLDER_MIME_TYPE = "application/vnd.google-apps.folder";
+    private static final String NO_PARENT = "";
+    private static final int MAX_DEPTH = 256; // Chặn vòng lặp parents bất thường
+
+    private final boolean keepFolders;
+    private final Map<String, String> parentOf = new ConcurrentHashMap<>();
+    private final CompactFileStore folders = new CompactFileStore();
+    // folderId -> (email mới lowercase -> role mạnh nhất đã có trên folder)
+    private final Map<String, Map<String, Integer>> grants = new ConcurrentHashMap<>();
+
+    /**
+     * @param keepFolders true cho folder tree mode (giữ folder để xử lý trước)
+     */
+    FolderTree(boolean keepFolders) {
+        this.keepFolders = keepFolders;
+    }
+
+    static boolean isFolder(DriveFile file) {
+        return FOLDER_MIME_TYPE.equals(file.mimeType);
+    }
+
+    /**
+     * Ghi nhận một item từ listing, item không phải folder bị bỏ qua
+     */
+    void add(DriveFile file) {
+        if (!isFolder(file)) return;
+
+        String parent = file.parents != null && !file.parents.isEmpty() ? file.parents.get(0) : NO_PARENT;
+        if (parentOf.put(file.id, parent) == null && keepFolders) {
+            folders.add(file);
+        }
+    }
+
+    boolean containsFolder(String folderId) {
+        return folderId != null && parentOf.containsKey(folderId);
+    }
+
+    int getFolderCount() {
+        return parentOf.size();
+    }
+
+    /**
+     * Folder nhóm theo độ sâu trong listing: tầng 0 là folder không có cha trong listing.
+     * Mỗi tầng là view trên store - DriveFile chỉ được dựng khi worker lấy ra.
+     */
+    List<List<DriveFile>> levels() {
+        Map<String, Integer> depthCache = new HashMap<>();
+        TreeMap<Integer, List<Integer>> byDepth = new TreeMap<>();
+        int count = folders.size();
+        for (int i = 0; i < count; i++) {
+            byDepth.computeIfAbsent(depth(folders.getId(i), depthCache), d -> new ArrayList<>()).add(i);
+        }
+
+        List<List<DriveFile>> levels = new ArrayList<>(byDepth.size());
+        for (List<Integer> indexes : byDepth.values()) {
+            levels.add(new AbstractList<DriveFile>() {
+                @Override
+                public DriveFile get(int index) {
+                    return folders.get(indexes.get(index));
+                }
+
+                @Override
+                public int size() {
+                    return indexes.size();
+                }
+            });
+        }
+        return levels;
+    }
+
+    private int depth(String folderId, Map<String, Integer> depthCache) {
+        List<String> path = new ArrayList<>();
+        String current = folderId;
+        int base = -1;
+        while (path.size() < MAX_DEPTH) {
+            Integer cached = depthCache.get(current);
+            if (cached != null) {
+                base = cached;
+                break;
+            }
+            path.add(current);
+            String parent = parentOf.get(current);
+            if (parent == null || NO_PARENT.equals(parent) || !parentOf.containsKey(parent)) break;
+            current = parent;
+        }
+
+        // path[last] là gốc (depth base + 1), các phần tử trước sâu dần
+        for (int i = path.size() - 1; i >= 0; i--) {
+            depthCache.put(path.get(i), ++base);
+        }
+        return depthCache.get(folderId);
+    }
+
+    /**
+     * Email mới đã có role trên folder (write thành công, đã có sẵn, hoặc xong ở lần chạy trước)
+     */
+    void recordGrant(String folderId, String newEmail, String role) {
+        if (!containsFolder(folderId) || newEmail == null) return;
+        grants.computeIfAbsent(folderId, id -> new ConcurrentHashMap<>())
+                .merge(newEmail.toLowerCase(), DriveServiceComplete.roleStrength(role), Math::max);
+    }
+
+    /**
+     * Email mới đã có role bằng hoặc mạnh hơn trên chính folder này?
+     */
+    boolean hasGrant(String folderId, String newEmail, String role) {
+        Map<String, Integer> granted = folderId != null ? grants.get(folderId) : null;
+        Integer grantedStrength = granted != null ? granted.get(newEmail.toLowerCase()) : null;
+        return grantedStrength != null && grantedStrength >= DriveServiceComplete.roleStrength(role);
+    }
+
+    /**
+     * Một folder tổ tiên (trong listing) của file đã cấp cho newEmail role bằng hoặc mạnh hơn?
+     */
+    boolean coveredByAncestor(DriveFile file, String newEmail, String role) {
+        if (file.parents == null || grants.isEmpty()) return false;
+
+        String key = newEmail.toLowerCase();
+        int strength = DriveServiceComplete.roleStrength(role);
+        for (String parent : file.parents) {
+            String current = parent;
+            for (int hops = 0; current != null && hops < MAX_DEPTH; hops++) {
+                Map<String, Integer> granted = grants.get(current);
+                Integer grantedStrength = granted != null ? granted.get(key) : null;
+                if (grantedStrength != null && grantedStrength >= strength) return true;
+
+                String next = parentOf.get(current);
+                current = NO_PARENT.equals(next) ? null : next;
+            }
+        }
+        return false;
+    }
+}
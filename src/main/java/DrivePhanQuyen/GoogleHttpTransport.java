@@ -0,0 +1,190 @@
+package DrivePhanQuyen;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Transport HTTP dùng chung cho Drive, Sheets và token endpoint.
+ *
+ * - Một HttpClient cho cả process: HTTP/2 multiplex nhiều request trên vài
+ *   kết nối TCP/TLS tới googleapis.com thay vì handshake mỗi request
+ * - Connect timeout + request timeout (trước đây HttpURLConnection không có timeout)
+ * - Số request đang bay bị giới hạn bởi semaphore (dưới giới hạn stream
+ *   đồng thời của một kết nối HTTP/2); kết nối HTTP/1.1 fallback dùng pool
+ *   giới hạn qua jdk.httpclient.connectionPoolSize
+ * - send() đồng bộ và sendAsync() trả CompletableFuture
+ */
+class GoogleHttpTransport {
+    static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(15);
+    static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(120); // Batch 100 part có thể chậm
+    static final int MAX_IN_FLIGHT = 96;
+    private static final String CONNECTION_POOL_SIZE = "16";
+
+    static {
+        // Phải set trước khi HttpClient đầu tiên được tạo
+        if (System.getProperty("jdk.httpclient.connectionPoolSize") == null) {
+            System.setProperty("jdk.httpclient.connectionPoolSize", CONNECTION_POOL_SIZE);
+        }
+    }
+
+    private static final GoogleHttpTransport SHARED = new GoogleHttpTransport(MAX_IN_FLIGHT);
+
+    static GoogleHttpTransport shared() {
+        return SHARED;
+    }
+
+    private final HttpClient client;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+
+    GoogleHttpTransport(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Tạo request với timeout, Authorization (nếu có token) và body (nếu có)
+     */
+    HttpRequest buildRequest(String method, String url, String bearerToken, String contentType, String body) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(REQUEST_TIMEOUT);
+        if (bearerToken != null) {
+            builder.header("Authorization", "Bearer " + bearerToken);
+        }
+        if (contentType != null) {
+            builder.header("Content-Type", contentType);
+        }
+
+        HttpRequest.BodyPublisher publisher = body == null || body.isEmpty()
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8);
+        return builder.method(method, publisher).build();
+    }
+
+    /**
+     * Gửi đồng bộ, body đọc thành String (UTF-8). Lỗi mạng / timeout ném IOException.
+     */
+    HttpResponse<String> send(String method, String url, String bearerToken, String contentType, String body)
+            throws IOException, InterruptedException {
+        HttpRequest request = buildRequest(method, url, bearerToken, contentType, body);
+        inFlight.acquire();
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    /**
+     * Response với body chưa đọc - phải close() để trả slot in-flight
+     */
+    static class StreamResponse implements Closeable {
+        final int statusCode;
+        final String contentType;
+        final InputStream body;
+
+        StreamResponse(int statusCode, String contentType, InputStream body) {
+            this.statusCode = statusCode;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        /**
+         * Đọc hết body thành String (dùng cho response lỗi)
+         */
+        String readBody() throws IOException {
+            return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            body.close();
+        }
+    }
+
+    /**
+     * Gửi đồng bộ, trả body dạng InputStream để parse streaming (không dựng String).
+     * Slot in-flight được giữ tới khi caller đóng stream.
+     */
+    StreamResponse sendForStream(String method, String url, String bearerToken)
+            throws IOException, InterruptedException {
+        HttpRequest request = buildRequest(method, url, bearerToken, null, null);
+        inFlight.acquire();
+        boolean handedOff = false;
+        try {
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            InputStream releasing = new FilterInputStream(response.body()) {
+                private final AtomicBoolean closed = new AtomicBoolean(false);
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        if (closed.compareAndSet(false, true)) {
+                            inFlight.release();
+                        }
+                    }
+                }
+            };
+            handedOff = true;
+            return new StreamResponse(response.statusCode(), contentType(response), releasing);
+        } finally {
+            if (!handedOff) {
+                inFlight.release();
+            }
+        }
+    }
+
+    /**
+     * Gửi bất đồng bộ. Chờ (backpressure) nếu đã đủ MAX_IN_FLIGHT request đang bay,
+     * slot được trả khi response hoàn tất hoặc lỗi.
+     */
+    CompletableFuture<HttpResponse<String>> sendAsync(String method, String url, String bearerToken,
+                                                      String contentType, String body) throws InterruptedException {
+        HttpRequest request = buildRequest(method, url, bearerToken, contentType, body);
+        inFlight.acquire();
+        try {
+            return client.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8))
+                    .whenComplete((response, error) -> inFlight.release());
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    /**
+     * POST form-urlencoded (token exchange)
+     */
+    HttpResponse<String> postForm(String url, String formBody) throws IOException, InterruptedException {
+        return send("POST", url, null, "application/x-www-form-urlencoded", formBody);
+    }
+
+    static String contentType(HttpResponse<?> response) {
+        return response.headers().firstValue("Content-Type").orElse(null);
+    }
+
+    int getInFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    String describe() {
+        return "http in-flight " + getInFlight() + "/" + maxInFlight;
+    }
+}
@@ -0,0 +1,132 @@
+package DrivePhanQuyen;
+
+/**
+ * Tập long dạng open addressing (linear probing) - không boxing, mỗi phần tử 8 byte.
+ * Dùng làm index gọn cho hash 64-bit (journal, claim set, ...).
+ *
+ * Không thread-safe: caller tự đồng bộ. Giá trị 0 được dùng làm ô trống
+ * nên được ánh xạ sang một hằng số khác trước khi lưu.
+ */
+class LongHashSet {
+    private static final long EMPTY = 0L;
+    private static final long ZERO_REPLACEMENT = 0x9E3779B97F4A7C15L;
+    private static final double MAX_LOAD = 0.6;
+
+    private long[] table;
+    private int size;
+
+    LongHashSet(int expectedSize) {
+        int capacity = 16;
+        while (capacity * MAX_LOAD < expectedSize) {
+            capacity <<= 1;
+        }
+        table = new long[capacity];
+    }
+
+    /**
+     * @return true nếu value chưa có và vừa được thêm
+     */
+    boolean add(long value) {
+        if (value == EMPTY) value = ZERO_REPLACEMENT;
+        if (size + 1 > table.length * MAX_LOAD) {
+            resize();
+        }
+        if (insert(table, value)) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    boolean contains(long value) {
+        if (value == EMPTY) value = ZERO_REPLACEMENT;
+        int mask = table.length - 1;
+        int index = spread(value) & mask;
+        while (true) {
+            long current = table[index];
+            if (current == EMPTY) return false;
+            if (current == value) return true;
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * Xóa value (backward-shift deletion để chuỗi probing không bị đứt)
+     */
+    boolean remove(long value) {
+        if (value == EMPTY) value = ZERO_REPLACEMENT;
+        int mask = table.length - 1;
+        int index = spread(value) & mask;
+        while (true) {
+            long current = table[index];
+            if (current == EMPTY) return false;
+            if (current == value) break;
+            index = (index + 1) & mask;
+        }
+
+        int hole = index;
+        int next = (hole + 1) & mask;
+        while (table[next] != EMPTY) {
+            int home = spread(table[next]) & mask;
+            // Phần tử ở next có thể dời về hole nếu home không nằm giữa (hole, next]
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table[hole] = table[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[hole] = EMPTY;
+        size--;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private static boolean insert(long[] target, long value) {
+        int mask = target.length - 1;
+        int index = spread(value) & mask;
+        while (true) {
+            long current = target[index];
+            if (current == EMPTY) {
+                target[index] = value;
+                return true;
+            }
+            if (current == value) return false;
+            index = (index + 1) & mask;
+        }
+    }
+
+    private void resize() {
+        long[] bigger = new long[table.length << 1];
+        for (long value : table) {
+            if (value != EMPTY) {
+                insert(bigger, value);
+            }
+        }
+        table = bigger;
+    }
+
+    private static int spread(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Hash 64-bit của chuỗi (FNV-1a + finalizer của MurmurHash3)
+     */
+    static long hash64(CharSequence value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
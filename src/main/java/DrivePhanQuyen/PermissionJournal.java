@@ -0,0 +1,344 @@
+package DrivePhanQuyen;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Journal append-only ghi kết quả từng permission write: (user, fileId, newEmail, role, outcome).
+ *
+ * - Mỗi user một segment journal_<user>.log: chỉ nạp khi user bắt đầu xử lý (openUser),
+ *   đóng khi user dừng (closeUser), xóa khi user hoàn tất (retireUser) -> journal và index
+ *   không phình theo số user / số lần chạy
+ * - Group commit: record() chỉ thêm vào buffer, thread nền ghi + fsync mỗi 50ms
+ *   (hoặc khi buffer đầy) -> một fsync cho nhiều record, worker không chờ đĩa
+ * - Index trong RAM là LongHashSet chứa hash 64-bit của các write SUCCESS
+ *   (8 byte/write) -> processUserDrive bỏ qua write đã xong sau crash / Stop
+ * - Compaction khi nạp segment: chỉ giữ một dòng cho mỗi write SUCCESS, bỏ dòng trùng,
+ *   dòng lỗi và dòng ghi dở cuối file
+ *
+ * Format: mỗi dòng UTF-8 "user\tfileId\tnewEmail\trole\toutcome\n".
+ */
+class PermissionJournal implements Closeable {
+    static final String OUTCOME_SUCCESS = "SUCCESS";
+
+    private static final long GROUP_COMMIT_INTERVAL_MS = 50;
+    private static final int MAX_BUFFERED_BYTES = 256 * 1024;
+
+    private final File directory;
+    private final Map<String, Segment> segments = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService committer;
+    private volatile boolean closed;
+
+    /**
+     * @param legacyFile journal một file cho mọi user (bản cũ) - được tách thành segment rồi xóa
+     */
+    PermissionJournal(File directory, File legacyFile) throws IOException {
+        this.directory = directory;
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create journal directory: " + directory.getAbsolutePath());
+        }
+        if (legacyFile != null && legacyFile.exists()) {
+            splitLegacy(legacyFile);
+        }
+
+        this.committer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "JournalCommitter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        committer.scheduleWithFixedDelay(this::commitQuietly,
+                GROUP_COMMIT_INTERVAL_MS, GROUP_COMMIT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static String userKey(String userEmail) {
+        return userEmail.toLowerCase(Locale.ROOT);
+    }
+
+    private File segmentFile(String userEmail) {
+        return new File(directory, "journal_" + DriveEnumerator.fileSafe(userEmail) + ".log");
+    }
+
+    /**
+     * Tách journal cũ theo user (chỉ dòng SUCCESS), segment sẽ được compact khi nạp
+     */
+    private void splitLegacy(File legacyFile) throws IOException {
+        Map<String, Writer> writers = new HashMap<>();
+        long lines = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(legacyFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                if (fields.length != 5 || !OUTCOME_SUCCESS.equals(fields[4]) || fields[0].isEmpty()) continue;
+
+                Writer writer = writers.get(userKey(fields[0]));
+                if (writer == null) {
+                    writer = new BufferedWriter(new OutputStreamWriter(
+                            new FileOutputStream(segmentFile(fields[0]), true), StandardCharsets.UTF_8));
+                    writers.put(userKey(fields[0]), writer);
+                }
+                writer.write(line);
+                writer.write('\n');
+                lines++;
+            }
+        } finally {
+            for (Writer writer : writers.values()) {
+                writer.close();
+            }
+        }
+
+        if (!legacyFile.delete()) {
+            throw new IOException("Could not delete legacy journal after split: " + legacyFile.getAbsolutePath());
+        }
+        System.out.println("📒 Journal split into " + writers.size() + " user segments (" + lines + " records)");
+    }
+
+    /**
+     * Nạp segment của user (compact + index). Gọi trước khi xử lý user.
+     */
+    synchronized void openUser(String userEmail) throws IOException {
+        if (closed) throw new IOException("Journal is closed");
+        if (segments.containsKey(userKey(userEmail))) return;
+        segments.put(userKey(userEmail), new Segment(segmentFile(userEmail)));
+    }
+
+    /**
+     * User dừng (lỗi / Stop / xong): ghi nốt buffer, giải phóng index. Segment vẫn trên đĩa cho lần chạy sau.
+     */
+    synchronized void closeUser(String userEmail) throws IOException {
+        Segment segment = segments.remove(userKey(userEmail));
+        if (segment != null) {
+            segment.close();
+        }
+    }
+
+    /**
+     * User hoàn tất: write của user không còn cần resume -> xóa segment
+     */
+    synchronized void retireUser(String userEmail) throws IOException {
+        closeUser(userEmail);
+        File file = segmentFile(userEmail);
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Could not delete journal segment: " + file.getAbsolutePath());
+        }
+    }
+
+    private static long key(String userEmail, String fileId, String newEmail, String role) {
+        return LongHashSet.hash64(userKey(userEmail) + '\t' + fileId + '\t' +
+                newEmail.toLowerCase() + '\t' + role);
+    }
+
+    /**
+     * Write này đã thành công ở lần chạy trước (hoặc trước đó trong lần này)?
+     */
+    boolean isCompleted(String userEmail, String fileId, String newEmail, String role) {
+        Segment segment = segments.get(userKey(userEmail));
+        return segment != null && segment.isCompleted(key(userEmail, fileId, newEmail, role));
+    }
+
+    /**
+     * Ghi kết quả một write. Bền vững sau lần group commit kế tiếp (tối đa ~50ms).
+     */
+    void record(String userEmail, String fileId, String newEmail, String role, String outcome) {
+        Segment segment = segments.get(userKey(userEmail));
+        if (segment == null) {
+            // Task bị cancel còn chạy nốt sau khi user đã đóng - lần sau write được plan lại
+            System.err.println("⚠️ Journal closed for " + userEmail + ", write on " + fileId + " not recorded");
+            return;
+        }
+
+        String line = sanitize(userEmail) + '\t' + sanitize(fileId) + '\t' + sanitize(newEmail) + '\t' +
+                sanitize(role) + '\t' + sanitize(outcome) + '\n';
+        boolean success = OUTCOME_SUCCESS.equals(outcome);
+        long successKey = success ? key(userEmail, fileId, newEmail, role) : 0;
+        if (segment.append(line.getBytes(StandardCharsets.UTF_8), success, successKey) && !closed) {
+            try {
+                committer.execute(this::commitQuietly);
+            } catch (RejectedExecutionException e) {
+                // close() chạy giữa chừng - close đã ghi nốt buffer, write đã gửi vẫn là SUCCESS
+                System.err.println("⚠️ Journal closed for " + userEmail + ", write on " + fileId + " not committed early");
+            }
+        }
+    }
+
+    private static String sanitize(String value) {
+        if (value == null) return "";
+        return value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    /**
+     * Ghi buffer của mọi segment đang mở xuống đĩa và fsync
+     */
+    void commit() throws IOException {
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            segment.commit();
+        }
+    }
+
+    private void commitQuietly() {
+        try {
+            commit();
+        } catch (IOException e) {
+            System.err.println("⚠️ Journal commit failed: " + e.getMessage());
+        }
+    }
+
+    int getCompletedCount() {
+        int count = 0;
+        for (Segment segment : segments.values()) {
+            count += segment.getCompletedCount();
+        }
+        return count;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        committer.shutdown();
+        IOException failure = null;
+        List<Segment> open = new ArrayList<>(segments.values());
+        segments.clear();
+        for (Segment segment : open) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * Journal của một user: file + index SUCCESS + buffer group commit
+     */
+    private static class Segment {
+        private final File file;
+        private final FileChannel channel;
+        private final Object commitLock = new Object();
+
+        // guarded by this
+        private final LongHashSet completed = new LongHashSet(1 << 12);
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream(16 * 1024);
+        private boolean closed;
+
+        Segment(File file) throws IOException {
+            this.file = file;
+            compact();
+            this.channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+
+        /**
+         * Đọc segment vào index, viết lại file chỉ gồm các write SUCCESS duy nhất
+         */
+        private void compact() throws IOException {
+            if (!file.exists()) return;
+
+            File tmp = new File(file.getPath() + ".compact");
+            long linesRead = 0;
+            long linesKept = 0;
+
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+                 Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    linesRead++;
+                    String[] fields = line.split("\t", -1);
+                    if (fields.length != 5 || !OUTCOME_SUCCESS.equals(fields[4])) continue;
+
+                    if (completed.add(key(fields[0], fields[1], fields[2], fields[3]))) {
+                        writer.write(line);
+                        writer.write('\n');
+                        linesKept++;
+                    }
+                }
+            }
+
+            if (linesKept < linesRead || !endsWithNewline(file)) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                System.out.println("📒 Journal " + file.getName() + " compacted: " + linesRead + " -> " + linesKept + " records");
+            } else if (!tmp.delete()) {
+                System.err.println("⚠️ Could not delete " + tmp.getAbsolutePath());
+            }
+            if (linesKept > 0) {
+                System.out.println("📒 Journal " + file.getName() + " loaded: " + linesKept + " completed permission writes");
+            }
+        }
+
+        private static boolean endsWithNewline(File file) throws IOException {
+            if (file.length() == 0) return true;
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                raf.seek(file.length() - 1);
+                return raf.read() == '\n';
+            }
+        }
+
+        synchronized boolean isCompleted(long key) {
+            return completed.contains(key);
+        }
+
+        /**
+         * @return true nếu buffer đã đầy và nên commit ngay
+         */
+        synchronized boolean append(byte[] line, boolean success, long successKey) {
+            if (closed) return false;
+            if (success) {
+                completed.add(successKey);
+            }
+            buffer.write(line, 0, line.length);
+            return buffer.size() >= MAX_BUFFERED_BYTES;
+        }
+
+        void commit() throws IOException {
+            synchronized (commitLock) {
+                byte[] batch;
+                synchronized (this) {
+                    if (buffer.size() == 0 || !channel.isOpen()) return;
+                    batch = buffer.toByteArray();
+                    buffer = new ByteArrayOutputStream(16 * 1024);
+                }
+
+                ByteBuffer data = ByteBuffer.wrap(batch);
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+                channel.force(false);
+            }
+        }
+
+        synchronized int getCompletedCount() {
+            return completed.size();
+        }
+
+        void close() throws IOException {
+            synchronized (this) {
+                closed = true;
+            }
+            try {
+                commit();
+            } finally {
+                synchronized (commitLock) {
+                    channel.close();
+                }
+            }
+        }
+    }
+}
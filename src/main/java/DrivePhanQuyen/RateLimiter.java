@@ -0,0 +1,25 @@
+package DrivePhanQuyen;
+
+/**
+ * Giới hạn tốc độ gọi API - có thể thay implementation
+ * (mặc định: TokenBucketRateLimiter theo user + theo project)
+ */
+interface RateLimiter {
+
+    /**
+     * Chờ cho tới khi được phép gửi request tốn permits quota của userEmail
+     */
+    void acquire(String userEmail, int permits) throws InterruptedException;
+
+    /**
+     * Số permits lớn nhất một request nên xin: xin nhiều hơn burst thì phải chờ trả "nợ" trước khi gửi
+     */
+    default int maxPermitsPerRequest() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Mô tả cấu hình để ghi log
+     */
+    String describe();
+}
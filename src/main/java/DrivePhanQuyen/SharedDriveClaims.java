@@ -0,0 +1,90 @@
+package DrivePhanQuyen;
+
+import java.util.*;
+
+/**
+ * Phân công shared drive cho user trong một lần chạy migration.
+ *
+ * - Chỉ user quản lý được drive (canManageMembers, tức organizer) mới claim -> membership của
+ *   drive (permission ở gốc) ghi được, không bị RESTRICTED
+ * - Một drive chỉ một user claim tại một thời điểm; user xong thì drive được đánh dấu done
+ * - User lỗi / bị Stop thì claim được trả lại: organizer kế tiếp được xử lý sẽ nhận drive
+ *   (user vừa lỗi không claim lại drive đó trong lần chạy này)
+ *
+ * Trạng thái chỉ sống trong một lần chạy - reset() khi Start.
+ */
+class SharedDriveClaims {
+
+    private static class DriveState {
+        final String name;
+        String claimant;
+        boolean done;
+        final Set<String> failedBy = new HashSet<>();
+
+        DriveState(String name) {
+            this.name = name;
+        }
+    }
+
+    private final Map<String, DriveState> drives = new HashMap<>();
+
+    synchronized void reset() {
+        drives.clear();
+    }
+
+    /**
+     * User là thành viên của các drive này (canShare = canManageMembers). Trả về id các drive user nhận xử lý.
+     */
+    synchronized List<String> claim(String userEmail, List<DriveFile> memberOf) {
+        String user = userEmail.toLowerCase(Locale.ROOT);
+        List<String> claimed = new ArrayList<>();
+        for (DriveFile drive : memberOf) {
+            DriveState state = drives.computeIfAbsent(drive.id, id -> new DriveState(drive.name));
+            if (state.done || state.failedBy.contains(user)) continue;
+            if (user.equals(state.claimant)) {
+                claimed.add(drive.id);
+            } else if (state.claimant == null && Boolean.TRUE.equals(drive.canShare)) {
+                state.claimant = user;
+                claimed.add(drive.id);
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * User dừng xử lý các drive đã claim: completed = true đánh dấu xong, false trả claim lại
+     */
+    synchronized void finish(String userEmail, Collection<String> driveIds, boolean completed) {
+        String user = userEmail.toLowerCase(Locale.ROOT);
+        for (String driveId : driveIds) {
+            DriveState state = drives.get(driveId);
+            if (state == null || !user.equals(state.claimant)) continue;
+            if (completed) {
+                state.done = true;
+            } else {
+                state.claimant = null;
+                state.failedBy.add(user);
+            }
+        }
+    }
+
+    synchronized String getName(String driveId) {
+        DriveState state = drives.get(driveId);
+        return state != null ? state.name : null;
+    }
+
+    /**
+     * Drive đã gặp trong lần chạy nhưng chưa được xử lý xong (không có organizer, hoặc organizer đều lỗi)
+     */
+    synchronized List<String> getUnfinished() {
+        List<String> unfinished = new ArrayList<>();
+        for (Map.Entry<String, DriveState> entry : drives.entrySet()) {
+            DriveState state = entry.getValue();
+            if (!state.done && state.claimant == null) {
+                unfinished.add(state.name != null ? state.name + " (" + entry.getKey() + ")" : entry.getKey());
+            }
+        }
+        Collections.sort(unfinished);
+        return unfinished;
+    }
+}
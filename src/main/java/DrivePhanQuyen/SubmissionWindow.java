@@ -0,0 +1,228 @@
+package DrivePhanQuyen;
+
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Cửa sổ submit có giới hạn trên một ExecutorService.
+ *
+ * - Tối đa maxInFlight task cùng lúc: submit() chờ (backpressure) khi cửa sổ đầy,
+ *   bộ nhớ cho việc đang chạy cố định thay vì một Future cho mỗi file
+ * - Kết quả được lấy theo thứ tự hoàn thành (ExecutorCompletionService),
+ *   một task chậm không chặn báo cáo của các task sau
+ * - Timeout chỉ tính thời gian task thực sự chạy: từ lúc bắt đầu (không từ lúc submit), trừ các
+ *   đoạn task đánh dấu là chờ quota (beginWait / endWait: rate limiter, backoff, claim của user khác)
+ * - Quá timeout: task được đánh dấu expired và interrupt - task không gửi thêm gì, trả kết quả
+ *   của phần đã xong (currentTaskExpired). Task vẫn không trả về sau CANCEL_GRACE_SECONDS
+ *   mới bị cancel(true) và báo về handler như một lỗi timeout
+ *
+ * Chỉ một thread (dispatcher) gọi submit / reap / awaitAll. Handler chạy trên thread đó.
+ */
+class SubmissionWindow<K, T> {
+
+    /**
+     * Nhận kết quả theo thứ tự hoàn thành
+     */
+    interface Handler<K, T> {
+        void onResult(K key, T result);
+
+        void onFailure(K key, Throwable error, boolean timedOut);
+    }
+
+    private static final long CANCEL_GRACE_SECONDS = 30;
+
+    // Task đang chạy trên thread hiện tại (cho beginWait / endWait / currentTaskExpired)
+    private static final ThreadLocal<Entry<?>> CURRENT = new ThreadLocal<>();
+
+    private static class Entry<K> {
+        final K key;
+        volatile long startNanos; // 0 = còn chờ trong queue của executor
+        volatile long waitStartNanos; // 0 = không chờ quota
+        volatile long waitedNanos;
+        volatile boolean expired;
+        int waitDepth; // chỉ thread chạy task đụng tới
+        long expiredAtNanos; // chỉ dispatcher đụng tới
+        boolean timedOut;
+        private Thread runner; // guarded by this
+
+        Entry(K key) {
+            this.key = key;
+        }
+
+        synchronized void start(Thread thread) {
+            runner = thread;
+            startNanos = Math.max(1, System.nanoTime());
+        }
+
+        /**
+         * Interrupt của timeout không được lan sang task kế tiếp trên thread này
+         */
+        synchronized void finish() {
+            runner = null;
+            Thread.interrupted();
+        }
+
+        synchronized void interruptRunner() {
+            if (runner != null) {
+                runner.interrupt();
+            }
+        }
+
+        /**
+         * Thời gian đã chạy, không tính lúc chờ quota
+         */
+        long activeNanos(long now) {
+            // Đọc waitStartNanos trước: endWait cộng waitedNanos rồi mới xóa waitStartNanos,
+            // nên chỉ có thể tính trùng (timeout muộn hơn một chút), không bao giờ tính thiếu
+            long waitStart = waitStartNanos;
+            long waited = waitedNanos;
+            if (waitStart != 0) {
+                waited += now - waitStart;
+            }
+            return now - startNanos - waited;
+        }
+    }
+
+    private final CompletionService<T> completion;
+    private final Semaphore permits;
+    private final long timeoutNanos;
+    private final Handler<K, T> handler;
+    private final Map<Future<T>, Entry<K>> inFlight = new ConcurrentHashMap<>();
+    private long timedOutCount;
+
+    SubmissionWindow(ExecutorService executor, int maxInFlight, long timeout, TimeUnit unit, Handler<K, T> handler) {
+        this.completion = new ExecutorCompletionService<>(executor);
+        this.permits = new Semaphore(maxInFlight);
+        this.timeoutNanos = unit.toNanos(timeout);
+        this.handler = handler;
+    }
+
+    /**
+     * Submit một task, chờ nếu cửa sổ đầy (trong lúc chờ vẫn thu kết quả và cancel task quá hạn)
+     */
+    void submit(K key, Callable<T> task) throws InterruptedException {
+        while (!permits.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+            reap();
+        }
+
+        Entry<K> entry = new Entry<>(key);
+        Future<T> future;
+        try {
+            future = completion.submit(() -> {
+                entry.start(Thread.currentThread());
+                CURRENT.set(entry);
+                try {
+                    return task.call();
+                } finally {
+                    CURRENT.remove();
+                    entry.finish();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+        inFlight.put(future, entry);
+        reap();
+    }
+
+    /**
+     * Thu các task đã xong và cancel task quá hạn, không chờ
+     */
+    void reap() throws InterruptedException {
+        cancelExpired();
+        Future<T> done;
+        while ((done = completion.poll()) != null) {
+            complete(done);
+        }
+    }
+
+    /**
+     * Chờ tới khi mọi task đã submit xong (hoặc bị cancel vì quá hạn)
+     */
+    void awaitAll() throws InterruptedException {
+        while (!inFlight.isEmpty()) {
+            cancelExpired();
+            Future<T> done = completion.poll(200, TimeUnit.MILLISECONDS);
+            if (done != null) {
+                complete(done);
+            }
+        }
+    }
+
+    private void cancelExpired() {
+        long now = System.nanoTime();
+        for (Map.Entry<Future<T>, Entry<K>> item : inFlight.entrySet()) {
+            Entry<K> entry = item.getValue();
+            if (entry.startNanos == 0 || entry.timedOut) continue;
+
+            if (!entry.expired) {
+                if (entry.activeNanos(now) > timeoutNanos) {
+                    // Mềm: task tự dừng và báo kết quả của phần đã xong
+                    entry.expired = true;
+                    entry.expiredAtNanos = now;
+                    entry.interruptRunner();
+                }
+            } else if (now - entry.expiredAtNanos > TimeUnit.SECONDS.toNanos(CANCEL_GRACE_SECONDS)) {
+                entry.timedOut = true;
+                item.getKey().cancel(true);
+            }
+        }
+    }
+
+    private void complete(Future<T> future) throws InterruptedException {
+        Entry<K> entry = inFlight.remove(future);
+        if (entry == null) return;
+        permits.release();
+
+        if (future.isCancelled()) {
+            timedOutCount++;
+            handler.onFailure(entry.key, new TimeoutException("Task exceeded " +
+                    TimeUnit.NANOSECONDS.toSeconds(timeoutNanos) + "s and was cancelled"), true);
+            return;
+        }
+        if (entry.expired) {
+            timedOutCount++;
+        }
+        try {
+            handler.onResult(entry.key, future.get());
+        } catch (ExecutionException e) {
+            handler.onFailure(entry.key, e.getCause(), false);
+        }
+    }
+
+    /**
+     * Task hiện tại bắt đầu chờ quota - thời gian chờ không tính vào timeout.
+     * Không chạy trong task của SubmissionWindow (listing, ...) thì không làm gì.
+     */
+    static void beginWait() {
+        Entry<?> entry = CURRENT.get();
+        if (entry != null && entry.waitDepth++ == 0) {
+            entry.waitStartNanos = Math.max(1, System.nanoTime());
+        }
+    }
+
+    static void endWait() {
+        Entry<?> entry = CURRENT.get();
+        if (entry != null && entry.waitDepth > 0 && --entry.waitDepth == 0) {
+            entry.waitedNanos += System.nanoTime() - entry.waitStartNanos;
+            entry.waitStartNanos = 0;
+        }
+    }
+
+    /**
+     * Task hiện tại đã quá timeout: không gửi thêm write, trả kết quả của phần đã xong
+     */
+    static boolean currentTaskExpired() {
+        Entry<?> entry = CURRENT.get();
+        return entry != null && entry.expired;
+    }
+
+    int getInFlight() {
+        return inFlight.size();
+    }
+
+    long getTimedOutCount() {
+        return timedOutCount;
+    }
+}
@@ -0,0 +1,56 @@
+package DrivePhanQuyen;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket không khóa (lock-free).
+ *
+ * Thay vì lưu (số token, thời điểm refill) - hai giá trị không CAS được cùng lúc -
+ * bucket lưu một mốc nanoTime duy nhất: thời điểm bucket "trả hết nợ"
+ * (theoretical arrival time, GCRA). Mỗi request đẩy mốc này thêm
+ * permits * intervalNanos; request phải chờ khi mốc vượt quá now + burst.
+ * Bucket rảnh lâu thì mốc tụt về quá khứ = bucket đầy lại (refill theo nanoTime).
+ */
+class TokenBucket {
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong theoreticalArrival;
+
+    /**
+     * @param permitsPerSecond tốc độ refill
+     * @param burst            số request tối đa được gửi dồn khi bucket đầy
+     */
+    TokenBucket(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0) throw new IllegalArgumentException("permitsPerSecond must be > 0");
+        if (burst < 1) throw new IllegalArgumentException("burst must be >= 1");
+
+        this.intervalNanos = (long) (1_000_000_000L / permitsPerSecond);
+        this.burstNanos = intervalNanos * burst;
+        this.theoreticalArrival = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Đặt chỗ permits token, trả về số nano giây cần chờ trước khi dùng (0 = dùng ngay).
+     * Chỗ đã đặt không hoàn lại.
+     */
+    long reserve(int permits) {
+        long increment = intervalNanos * permits;
+        while (true) {
+            long now = System.nanoTime();
+            long current = theoreticalArrival.get();
+            long next = Math.max(current, now) + increment;
+
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                return Math.max(0, next - now - burstNanos);
+            }
+        }
+    }
+
+    double getPermitsPerSecond() {
+        return 1_000_000_000.0 / intervalNanos;
+    }
+
+    int getBurst() {
+        return (int) (burstNanos / intervalNanos);
+    }
+}
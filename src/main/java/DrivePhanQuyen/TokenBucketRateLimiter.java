@@ -0,0 +1,54 @@
+package DrivePhanQuyen;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limiter hai tầng: mỗi user được impersonate một bucket riêng
+ * (quota Drive tính theo user) + một bucket chung cho cả project.
+ *
+ * Các user chạy song song, không còn xếp hàng qua một delay toàn cục.
+ */
+class TokenBucketRateLimiter implements RateLimiter {
+    private final double userPermitsPerSecond;
+    private final int userBurst;
+    private final TokenBucket projectBucket;
+    private final Map<String, TokenBucket> userBuckets = new ConcurrentHashMap<>();
+
+    TokenBucketRateLimiter(double userPermitsPerSecond, int userBurst,
+                           double projectPermitsPerSecond, int projectBurst) {
+        // Bucket của user tạo lazily trong acquire() - kiểm tra ngay để cấu hình sai lỗi ở đây, không phải ở mỗi write
+        if (!(userPermitsPerSecond > 0)) throw new IllegalArgumentException("userPermitsPerSecond must be > 0");
+        if (userBurst < 1) throw new IllegalArgumentException("userBurst must be >= 1");
+
+        this.userPermitsPerSecond = userPermitsPerSecond;
+        this.userBurst = userBurst;
+        this.projectBucket = new TokenBucket(projectPermitsPerSecond, projectBurst);
+    }
+
+    @Override
+    public void acquire(String userEmail, int permits) throws InterruptedException {
+        if (permits <= 0) return;
+
+        TokenBucket userBucket = userBuckets.computeIfAbsent(userEmail,
+                key -> new TokenBucket(userPermitsPerSecond, userBurst));
+
+        long waitNanos = Math.max(userBucket.reserve(permits), projectBucket.reserve(permits));
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    @Override
+    public int maxPermitsPerRequest() {
+        return Math.min(userBurst, projectBucket.getBurst());
+    }
+
+    @Override
+    public String describe() {
+        return String.format("token bucket %.1f req/s per user (burst %d), %.1f req/s per project (burst %d)",
+                userPermitsPerSecond, userBurst,
+                projectBucket.getPermitsPerSecond(), projectBucket.getBurst());
+    }
+}
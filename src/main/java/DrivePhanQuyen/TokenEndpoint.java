@@ -0,0 +1,47 @@
+package DrivePhanQuyen;
+
+import java.net.http.HttpResponse;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Đổi JWT assertion lấy access token (grant jwt-bearer) ở token endpoint của Google.
+ *
+ * Dùng chung cho Drive và Sheets để hai service xử lý lỗi và hạn token giống nhau:
+ * expires_in lấy từ response (thiếu thì 3600s), tính từ lúc bắt đầu gửi request.
+ */
+class TokenEndpoint {
+    static final String URL = "https://oauth2.googleapis.com/token";
+    private static final long DEFAULT_EXPIRES_IN_SECONDS = 3600;
+
+    private static final Pattern ACCESS_TOKEN_PATTERN = Pattern.compile("\"access_token\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern EXPIRES_IN_PATTERN = Pattern.compile("\"expires_in\"\\s*:\\s*(\\d+)");
+
+    private TokenEndpoint() {
+    }
+
+    /**
+     * @param subject user được impersonate - chỉ dùng cho thông báo lỗi
+     */
+    static AccessTokenCache.AccessToken exchange(GoogleHttpTransport transport, String jwt, String subject)
+            throws Exception {
+        long now = System.currentTimeMillis();
+        String postData = "grant_type=urn:ietf:params:oauth:grant-type:jwt-bearer&assertion=" + jwt;
+        HttpResponse<String> tokenResponse = transport.postForm(URL, postData);
+
+        int responseCode = tokenResponse.statusCode();
+        if (responseCode != 200) {
+            throw new RuntimeException("Failed to get access token for " + subject + ": " + responseCode + " - " + tokenResponse.body());
+        }
+
+        String jsonResponse = tokenResponse.body();
+        Matcher matcher = ACCESS_TOKEN_PATTERN.matcher(jsonResponse);
+        if (!matcher.find()) {
+            throw new RuntimeException("Could not extract access token from response for " + subject);
+        }
+
+        Matcher expiresMatcher = EXPIRES_IN_PATTERN.matcher(jsonResponse);
+        long expiresInSeconds = expiresMatcher.find() ? Long.parseLong(expiresMatcher.group(1)) : DEFAULT_EXPIRES_IN_SECONDS;
+        return new AccessTokenCache.AccessToken(matcher.group(1), now + expiresInSeconds * 1000);
+    }
+}
@@ -0,0 +1,72 @@
+package DrivePhanQuyen;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual thread (JDK 21+) qua reflection - project vẫn build với target 11.
+ *
+ * Trên JDK cũ hơn isSupported() = false và caller dùng thread pool thường. Static init thử dựng
+ * thật một thread và một executor: JDK 19/20 có API nhưng ném lỗi khi thiếu --enable-preview,
+ * mọi lỗi ở bước này đều tính là không hỗ trợ.
+ */
+class VirtualThreads {
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_FACTORY;
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        Method perTask = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            perTask = java.util.concurrent.Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+
+            // Probe: preview API bị tắt thì ofVirtual() / newThread() ném UnsupportedOperationException
+            ThreadFactory probe = (ThreadFactory) factory.invoke(name.invoke(ofVirtual.invoke(null), "VirtualProbe-", 0L));
+            if (probe.newThread(() -> { }) == null) {
+                throw new IllegalStateException("Virtual thread factory returned null");
+            }
+            ((ExecutorService) perTask.invoke(null, probe)).shutdown();
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_FACTORY = factory;
+        NEW_THREAD_PER_TASK_EXECUTOR = perTask;
+    }
+
+    private VirtualThreads() {
+    }
+
+    static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Executor tạo một virtual thread cho mỗi task, tên namePrefix0, namePrefix1, ...
+     *
+     * @throws UnsupportedOperationException nếu JVM không có virtual thread
+     */
+    static ExecutorService newPerTaskExecutor(String namePrefix) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Virtual threads require JDK 21+, running on " +
+                    System.getProperty("java.version"));
+        }
+        try {
+            Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), namePrefix, 0L);
+            ThreadFactory factory = (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Could not create virtual thread executor: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package DrivePhanQuyen;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Tập claim (fileId, email mới, role) dùng chung cho mọi user trong một lần chạy.
+ *
+ * File share cho nhiều user trong mapping xuất hiện trong listing của từng user đó -
+ * chỉ user claim đầu tiên gửi write. User đến sau nhận future của claim và chờ kết quả cuối:
+ * - true: claimant đã ghi SUCCESS -> "handled elsewhere"
+ * - false: claimant thất bại và đã release -> user đến sau claim lại và tự gửi
+ *
+ * Write đã xong nằm trong LongHashSet (hash 64-bit, 8 byte, không boxing); chỉ claim đang
+ * gửi dở mới có future. Chia stripe theo hash để các worker không tranh nhau một lock.
+ */
+class WriteClaimSet {
+    private static final CompletableFuture<Boolean> DONE = CompletableFuture.completedFuture(Boolean.TRUE);
+
+    private static class Stripe {
+        LongHashSet done = new LongHashSet(1024);
+        final Map<Long, CompletableFuture<Boolean>> inProgress = new HashMap<>();
+    }
+
+    private final Stripe[] stripes;
+    private final int mask;
+
+    WriteClaimSet(int stripeCount) {
+        int count = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new Stripe[count];
+        this.mask = count - 1;
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    private static long key(String fileId, String newEmail, String role) {
+        return LongHashSet.hash64(fileId + '\t' + newEmail.toLowerCase() + '\t' + role);
+    }
+
+    private Stripe stripeFor(long key) {
+        return stripes[(int) (key >>> 40) & mask];
+    }
+
+    /**
+     * @return null nếu caller giữ claim (phải gọi complete hoặc release sau khi gửi),
+     *         ngược lại future kết quả cuối của claim đang có
+     */
+    CompletableFuture<Boolean> claim(String fileId, String newEmail, String role) {
+        long key = key(fileId, newEmail, role);
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            if (stripe.done.contains(key)) return DONE;
+            CompletableFuture<Boolean> current = stripe.inProgress.get(key);
+            if (current != null) return current;
+            stripe.inProgress.put(key, new CompletableFuture<>());
+            return null;
+        }
+    }
+
+    /**
+     * Write đã SUCCESS (gửi xong, hoặc journal của lần trước) - user đang chờ được báo "handled elsewhere"
+     */
+    void complete(String fileId, String newEmail, String role) {
+        long key = key(fileId, newEmail, role);
+        Stripe stripe = stripeFor(key);
+        CompletableFuture<Boolean> waiting;
+        synchronized (stripe) {
+            stripe.done.add(key);
+            waiting = stripe.inProgress.remove(key);
+        }
+        if (waiting != null) {
+            waiting.complete(Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Write thất bại - trả claim, user đang chờ sẽ claim lại
+     */
+    void release(String fileId, String newEmail, String role) {
+        long key = key(fileId, newEmail, role);
+        Stripe stripe = stripeFor(key);
+        CompletableFuture<Boolean> waiting;
+        synchronized (stripe) {
+            waiting = stripe.inProgress.remove(key);
+        }
+        if (waiting != null) {
+            waiting.complete(Boolean.FALSE);
+        }
+    }
+
+    /**
+     * Bắt đầu lần chạy mới: bỏ mọi claim cũ. User còn chờ claim của lần trước (task bị Stop
+     * chạy nốt) nhận false và claim lại như khi claimant thất bại.
+     */
+    void reset() {
+        List<CompletableFuture<Boolean>> abandoned = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.done = new LongHashSet(1024); // bảng mới - trả lại bộ nhớ của lần chạy trước
+                abandoned.addAll(stripe.inProgress.values());
+                stripe.inProgress.clear();
+            }
+        }
+        for (CompletableFuture<Boolean> waiting : abandoned) {
+            waiting.complete(Boolean.FALSE);
+        }
+    }
+}